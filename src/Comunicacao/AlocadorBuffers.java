@@ -0,0 +1,38 @@
+package src.Comunicacao;
+
+/**
+ * De onde vêm os buffers criados ao receber um Pedido ou uma Resposta.
+ *
+ * O padrão é alocar um buffer novo; quem controla a memória (por exemplo um pool)
+ * pode instalar outro alocador para a thread atual enquanto lê do stream.
+ */
+public interface AlocadorBuffers {
+
+    AlocadorBuffers PADRAO = BufferNativo::alocar;
+
+    BufferNativo alocar(int tamanho);
+
+    /**
+     * Alocador em uso pela thread atual
+     */
+    static AlocadorBuffers atual() {
+        return Instalado.ATUAL.get();
+    }
+
+    /**
+     * Instala um alocador para a thread atual (null volta ao padrão)
+     * @return alocador que estava instalado antes
+     */
+    static AlocadorBuffers instalar(AlocadorBuffers alocador) {
+        AlocadorBuffers anterior = Instalado.ATUAL.get();
+        Instalado.ATUAL.set(alocador != null ? alocador : PADRAO);
+        return anterior;
+    }
+
+    final class Instalado {
+        private static final ThreadLocal<AlocadorBuffers> ATUAL = ThreadLocal.withInitial(() -> PADRAO);
+
+        private Instalado() {
+        }
+    }
+}
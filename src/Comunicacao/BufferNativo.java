@@ -0,0 +1,296 @@
+package src.Comunicacao;
+
+import java.io.*;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Vetor de bytes mantido fora do heap (ByteBuffer direto) com tempo de vida explícito.
+ *
+ * Um buffer "dono" é criado por alocar() e deve ser liberado com liberar() (ou close())
+ * assim que não for mais necessário; a memória nativa é devolvida na hora, sem esperar o GC.
+ * Fatias criadas por fatia() apenas enxergam um trecho do dono e não copiam dados.
+ */
+public class BufferNativo implements AutoCloseable {
+
+    /** Tamanho do bloco usado para transferir dados entre o buffer e streams */
+    public static final int TAMANHO_BLOCO = 64 * 1024;
+
+    /** Maior vetor aceito em um Pedido ou Resposta recebido (-Dtransporte.tamanhoMaximo, em bytes; padrão 1 GiB) */
+    public static final int TAMANHO_MAXIMO_RECEBIDO = Integer.getInteger("transporte.tamanhoMaximo", 1 << 30);
+
+    private static final Method INVOCAR_CLEANER;
+    private static final Object UNSAFE;
+
+    static {
+        Method metodo = null;
+        Object unsafe = null;
+        try {
+            Class<?> classeUnsafe = Class.forName("sun.misc.Unsafe");
+            Field campo = classeUnsafe.getDeclaredField("theUnsafe");
+            campo.setAccessible(true);
+            unsafe = campo.get(null);
+            metodo = classeUnsafe.getMethod("invokeCleaner", ByteBuffer.class);
+        } catch (Exception e) {
+            // Sem acesso ao cleaner: a memória nativa fica para o GC recolher
+        }
+        INVOCAR_CLEANER = metodo;
+        UNSAFE = unsafe;
+    }
+
+    // Bloco do heap usado nas transferências de/para streams, reaproveitado por thread
+    private static final ThreadLocal<byte[]> BLOCO_DA_THREAD = ThreadLocal.withInitial(() -> new byte[TAMANHO_BLOCO]);
+
+    private final ByteBuffer dados;
+    private final BufferNativo dono;
+    // O próprio buffer ou o dono da fatia: é nele que fica a marca de liberado
+    private final BufferNativo raiz;
+    // Não é volatile: get()/put() conferem a marca a cada acesso e a leitura volatile custaria
+    // caro nos laços de intercalação. Buffers trocam de thread por filas e locks, que já
+    // garantem a visibilidade.
+    private boolean liberado;
+
+    private BufferNativo(ByteBuffer dados, BufferNativo dono) {
+        this.dados = dados;
+        this.dono = dono;
+        this.raiz = dono != null ? dono : this;
+    }
+
+    /**
+     * Aloca um novo buffer fora do heap
+     */
+    public static BufferNativo alocar(int tamanho) {
+        return new BufferNativo(ByteBuffer.allocateDirect(tamanho), null);
+    }
+
+    /**
+     * Mapeia os primeiros "tamanho" bytes de um arquivo (criado se não existir) em memória
+     * compartilhada: outros processos que mapearem o mesmo arquivo enxergam as mesmas páginas.
+     * liberar() desfaz o mapeamento.
+     */
+    public static BufferNativo mapear(Path arquivo, int tamanho) throws IOException {
+        try (FileChannel canal = FileChannel.open(arquivo, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            // O mapeamento continua válido depois que o canal é fechado
+            return new BufferNativo(canal.map(FileChannel.MapMode.READ_WRITE, 0, tamanho), null);
+        }
+    }
+
+    /**
+     * Mapeia um arquivo que já existe e tem exatamente "tamanho" bytes (não cria nem
+     * estende o arquivo e não segue links simbólicos). Usado com caminhos vindos de outro processo.
+     */
+    public static BufferNativo mapearExistente(Path arquivo, int tamanho) throws IOException {
+        try (FileChannel canal = FileChannel.open(arquivo, StandardOpenOption.READ, StandardOpenOption.WRITE,
+                LinkOption.NOFOLLOW_LINKS)) {
+            if (canal.size() != tamanho) {
+                throw new IOException("Arquivo " + arquivo + " tem " + canal.size() + " bytes, esperados " + tamanho);
+            }
+            return new BufferNativo(canal.map(FileChannel.MapMode.READ_WRITE, 0, tamanho), null);
+        }
+    }
+
+    /**
+     * Copia um vetor do heap para um novo buffer fora do heap
+     */
+    public static BufferNativo copiarDe(byte[] vetor) {
+        BufferNativo buffer = alocar(vetor.length);
+        buffer.dados.put(0, vetor, 0, vetor.length);
+        return buffer;
+    }
+
+    /**
+     * Envolve um vetor do heap sem copiar (usado pelo caminho de compatibilidade com byte[])
+     */
+    public static BufferNativo envolver(byte[] vetor) {
+        return new BufferNativo(ByteBuffer.wrap(vetor), null);
+    }
+
+    /**
+     * Cria uma visão do trecho [inicio, fim) sem copiar dados
+     */
+    public BufferNativo fatia(int inicio, int fim) {
+        verificarAtivo();
+        return new BufferNativo(dados.slice(inicio, fim - inicio), raiz());
+    }
+
+    public int tamanho() {
+        return dados.capacity();
+    }
+
+    public byte get(int indice) {
+        verificarAtivo();
+        return dados.get(indice);
+    }
+
+    public void put(int indice, byte valor) {
+        verificarAtivo();
+        dados.put(indice, valor);
+    }
+
+    /**
+     * Copia o conteúdo de outro buffer (de mesmo tamanho) para este
+     */
+    public void copiarDe(BufferNativo origem) {
+        verificarAtivo();
+        origem.verificarAtivo();
+        dados.put(0, origem.dados, 0, origem.tamanho());
+    }
+
+    /**
+     * Copia "tamanho" bytes de origem[inicioOrigem...] para este buffer a partir de "destino"
+     */
+    public void copiar(int destino, BufferNativo origem, int inicioOrigem, int tamanho) {
+        verificarAtivo();
+        origem.verificarAtivo();
+        dados.put(destino, origem.dados, inicioOrigem, tamanho);
+    }
+
+    /**
+     * Inverte o trecho [inicio, fim) no próprio lugar
+     */
+    public void inverter(int inicio, int fim) {
+        verificarAtivo();
+        for (int i = inicio, j = fim - 1; i < j; i++, j--) {
+            byte temp = dados.get(i);
+            dados.put(i, dados.get(j));
+            dados.put(j, temp);
+        }
+    }
+
+    /**
+     * Conteúdo como vetor no heap: buffers criados por envolver() com o vetor inteiro devolvem
+     * o próprio vetor (não é cópia; alterá-lo altera o buffer), os demais são copiados
+     */
+    public byte[] paraVetor() {
+        verificarAtivo();
+        if (dados.hasArray() && dados.arrayOffset() == 0 && dados.array().length == tamanho()) {
+            return dados.array();
+        }
+        byte[] vetor = new byte[tamanho()];
+        dados.get(0, vetor, 0, vetor.length);
+        return vetor;
+    }
+
+    /**
+     * Acesso direto ao ByteBuffer (visão independente de posição/limite)
+     */
+    public ByteBuffer getByteBuffer() {
+        verificarAtivo();
+        return dados.duplicate();
+    }
+
+    /**
+     * Aloca (pelo alocador da thread) o buffer de um vetor recebido, a partir do tamanho lido do
+     * stream. Tamanhos negativos ou acima de TAMANHO_MAXIMO_RECEBIDO são recusados antes de alocar.
+     */
+    static BufferNativo alocarRecebido(ObjectInputStream in) throws IOException {
+        int tamanho = in.readInt();
+        if (tamanho < 0 || tamanho > TAMANHO_MAXIMO_RECEBIDO) {
+            throw new InvalidObjectException("Tamanho de vetor inválido: " + tamanho +
+                    " (máximo " + TAMANHO_MAXIMO_RECEBIDO + ")");
+        }
+        return AlocadorBuffers.atual().alocar(tamanho);
+    }
+
+    /**
+     * Escreve o conteúdo em um stream em blocos de tamanho fixo
+     */
+    public void escreverEm(DataOutput out) throws IOException {
+        verificarAtivo();
+        byte[] bloco = blocoDaThread();
+        for (int i = 0; i < tamanho(); i += bloco.length) {
+            int n = Math.min(bloco.length, tamanho() - i);
+            dados.get(i, bloco, 0, n);
+            out.write(bloco, 0, n);
+        }
+    }
+
+    /**
+     * Lê exatamente tamanho() bytes de um stream para dentro do buffer
+     */
+    public void lerDe(DataInput in) throws IOException {
+        verificarAtivo();
+        byte[] bloco = blocoDaThread();
+        for (int i = 0; i < tamanho(); i += bloco.length) {
+            int n = Math.min(bloco.length, tamanho() - i);
+            in.readFully(bloco, 0, n);
+            dados.put(i, bloco, 0, n);
+        }
+    }
+
+    /**
+     * Escreve o conteúdo em um canal (arquivo ou socket) sem passar pelo heap
+     */
+    public void escreverEm(WritableByteChannel canal) throws IOException {
+        ByteBuffer visao = getByteBuffer();
+        while (visao.hasRemaining()) {
+            canal.write(visao);
+        }
+    }
+
+    /**
+     * Lê exatamente tamanho() bytes de um canal para dentro do buffer sem passar pelo heap
+     */
+    public void lerDe(ReadableByteChannel canal) throws IOException {
+        ByteBuffer visao = getByteBuffer();
+        while (visao.hasRemaining()) {
+            if (canal.read(visao) < 0) {
+                throw new EOFException("Canal encerrado antes de preencher o buffer");
+            }
+        }
+    }
+
+    /**
+     * Bloco de TAMANHO_BLOCO bytes no heap para cópias temporárias, um por thread
+     * (não pode ser guardado nem passado para outra thread)
+     */
+    static byte[] blocoDaThread() {
+        return BLOCO_DA_THREAD.get();
+    }
+
+    public boolean isLiberado() {
+        return raiz().liberado;
+    }
+
+    /**
+     * Devolve a memória nativa imediatamente. Fatias e o próprio buffer
+     * não podem mais ser usados depois disso: qualquer acesso lança IllegalStateException
+     * (ByteBuffers obtidos antes por getByteBuffer() não são protegidos).
+     */
+    public void liberar() {
+        if (dono != null || liberado) {
+            return;
+        }
+        liberado = true;
+        if (dados.isDirect() && INVOCAR_CLEANER != null) {
+            try {
+                INVOCAR_CLEANER.invoke(UNSAFE, dados);
+            } catch (Exception e) {
+                System.err.println("[AVISO] Não foi possível liberar buffer nativo: " + e.getMessage());
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        liberar();
+    }
+
+    private BufferNativo raiz() {
+        return raiz;
+    }
+
+    private void verificarAtivo() {
+        if (raiz().liberado) {
+            throw new IllegalStateException("Buffer nativo já liberado");
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package src.Comunicacao;
+
+import java.io.Serializable;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+
+/**
+ * Identificação de um vetor pelo seu conteúdo: SHA-256 mais o tamanho. Vetores com o
+ * mesmo conteúdo sempre geram a mesma chave. O cache do Receptor é compartilhado por todos
+ * os clientes, então a chave precisa ser criptográfica: com um hash comum, um cliente poderia
+ * montar um vetor com a chave de outro e receber o resultado guardado para ele.
+ */
+public class ChaveConteudo implements Serializable {
+
+    // MessageDigest não é thread-safe; um por thread evita criar um a cada chave
+    private static final ThreadLocal<MessageDigest> SHA256 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 indisponível", e);
+        }
+    });
+
+    private final byte[] resumo;
+    private final int tamanho;
+
+    private ChaveConteudo(byte[] resumo, int tamanho) {
+        this.resumo = resumo;
+        this.tamanho = tamanho;
+    }
+
+    /**
+     * Calcula a chave direto do ByteBuffer (sem copiar o vetor para o heap)
+     */
+    public static ChaveConteudo calcular(BufferNativo dados) {
+        MessageDigest sha = SHA256.get();
+        sha.update(dados.getByteBuffer());
+        return new ChaveConteudo(sha.digest(), dados.tamanho());
+    }
+
+    public int getTamanho() {
+        return tamanho;
+    }
+
+    @Override
+    public boolean equals(Object outro) {
+        if (!(outro instanceof ChaveConteudo)) {
+            return false;
+        }
+        ChaveConteudo c = (ChaveConteudo) outro;
+        return tamanho == c.tamanho && Arrays.equals(resumo, c.resumo);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(resumo);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder texto = new StringBuilder();
+        for (byte b : resumo) {
+            texto.append(String.format("%02x", b));
+        }
+        return texto.append('/').append(tamanho).toString();
+    }
+}
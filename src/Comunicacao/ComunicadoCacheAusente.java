@@ -0,0 +1,23 @@
+package src.Comunicacao;
+
+/**
+ * Resposta a um PedidoPorHash quando o resultado não está no cache do Receptor.
+ * Se o destino nem tem cache (Receptor iniciado com orçamento 0, serviço de ordenação),
+ * cacheAtivo é false e a ConexaoR deixa de consultar por chave nesta conexão.
+ */
+public class ComunicadoCacheAusente extends Comunicado {
+
+    private final boolean cacheAtivo;
+
+    public ComunicadoCacheAusente() {
+        this(true);
+    }
+
+    public ComunicadoCacheAusente(boolean cacheAtivo) {
+        this.cacheAtivo = cacheAtivo;
+    }
+
+    public boolean isCacheAtivo() {
+        return cacheAtivo;
+    }
+}
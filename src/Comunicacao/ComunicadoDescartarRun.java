@@ -0,0 +1,17 @@
+package src.Comunicacao;
+
+/**
+ * Descarta uma run guardada sem trazê-la de volta (o Receptor devolve o próprio comunicado)
+ */
+public class ComunicadoDescartarRun extends Comunicado {
+
+    private final String id;
+
+    public ComunicadoDescartarRun(String id) {
+        this.id = id;
+    }
+
+    public String getId() {
+        return id;
+    }
+}
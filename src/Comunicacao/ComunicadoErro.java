@@ -0,0 +1,19 @@
+package src.Comunicacao;
+
+/**
+ * Resposta a um pedido que não pôde ser atendido (ex.: objeto que o destino não conhece
+ * ou trabalho que falhou). A conexão continua válida; a ConexaoR transforma o comunicado
+ * em IOException com a mensagem recebida.
+ */
+public class ComunicadoErro extends Comunicado {
+
+    private final String mensagem;
+
+    public ComunicadoErro(String mensagem) {
+        this.mensagem = mensagem;
+    }
+
+    public String getMensagem() {
+        return mensagem;
+    }
+}
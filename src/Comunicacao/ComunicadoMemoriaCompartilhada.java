@@ -0,0 +1,69 @@
+package src.Comunicacao;
+
+import java.io.IOException;
+import java.nio.file.*;
+
+/**
+ * Negociação do transporte por memória compartilhada. A ConexaoR grava uma marca
+ * em um arquivo mapeado e envia o caminho; o Receptor mapeia o mesmo arquivo e
+ * devolve a marca que leu. Se as marcas coincidirem, os dois processos enxergam
+ * o mesmo sistema de arquivos e os vetores podem trafegar por arquivos mapeados.
+ *
+ * O lado que recebe só aceita arquivos "ordenacao-*" já existentes no diretório de memória
+ * compartilhada (ver mapearRecebido), e só de clientes na própria máquina (loopback).
+ */
+public class ComunicadoMemoriaCompartilhada extends Comunicado {
+
+    private final String arquivo;
+    private final long marca;
+
+    public ComunicadoMemoriaCompartilhada(String arquivo, long marca) {
+        this.arquivo = arquivo;
+        this.marca = marca;
+    }
+
+    public String getArquivo() {
+        return arquivo;
+    }
+
+    public long getMarca() {
+        return marca;
+    }
+
+    /**
+     * Lado do Receptor: lê a marca do arquivo indicado e monta a confirmação
+     * (marca 0 se o arquivo não puder ser mapeado)
+     */
+    public ComunicadoMemoriaCompartilhada confirmar() {
+        try (BufferNativo mapeado = mapearRecebido(arquivo, Long.BYTES)) {
+            return new ComunicadoMemoriaCompartilhada(arquivo, mapeado.getByteBuffer().getLong(0));
+        } catch (IOException | RuntimeException e) {
+            System.err.println("[AVISO] Memória compartilhada indisponível (" + arquivo + "): " + e.getMessage());
+            return recusar();
+        }
+    }
+
+    /**
+     * Lado do Receptor: confirmação negativa (marca 0), o cliente continua pelo socket
+     */
+    public ComunicadoMemoriaCompartilhada recusar() {
+        return new ComunicadoMemoriaCompartilhada(arquivo, 0);
+    }
+
+    /**
+     * Mapeia um arquivo indicado pelo outro processo (negociação ou PedidoMapeado).
+     * Recusa caminhos fora do diretório de memória compartilhada, nomes que não foram
+     * criados pela ConexaoR ("ordenacao-*"), arquivos inexistentes e tamanhos diferentes do informado.
+     */
+    public static BufferNativo mapearRecebido(String arquivo, int tamanho) throws IOException {
+        Path caminho = Paths.get(arquivo).toAbsolutePath().normalize();
+        Path diretorio = ConexaoR.DIRETORIO_COMPARTILHADO.toAbsolutePath().normalize();
+        if (!diretorio.equals(caminho.getParent()) || !caminho.getFileName().toString().startsWith("ordenacao-")) {
+            throw new IOException("Arquivo fora da área de memória compartilhada: " + arquivo);
+        }
+        if (!Files.isRegularFile(caminho, LinkOption.NOFOLLOW_LINKS)) {
+            throw new IOException("Arquivo de memória compartilhada inexistente: " + arquivo);
+        }
+        return BufferNativo.mapearExistente(caminho, tamanho);
+    }
+}
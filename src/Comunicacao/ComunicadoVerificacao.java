@@ -0,0 +1,8 @@
+package src.Comunicacao;
+
+/**
+ * Verificação de saúde: o Receptor responde devolvendo o mesmo comunicado
+ */
+public class ComunicadoVerificacao extends Comunicado {
+
+}
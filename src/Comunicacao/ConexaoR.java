@@ -0,0 +1,311 @@
+package src.Comunicacao;
+
+import java.io.*;
+import java.net.*;
+import java.nio.file.*;
+import java.security.SecureRandom;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Conexão persistente com um Receptor (usada pelo Distribuidor e pelos Receptores intermediários)
+ */
+public class ConexaoR {
+    /** Pedidos a partir deste tamanho consultam o cache do Receptor antes de enviar o vetor */
+    public static final int LIMIAR_CONSULTA_CACHE = 64 * 1024;
+
+    /** Pedidos a partir deste tamanho usam memória compartilhada com Receptores na mesma máquina */
+    public static final int LIMIAR_MEMORIA_COMPARTILHADA = 64 * 1024;
+
+    // -Dtransporte.memoriaCompartilhada=false força o uso do socket mesmo para Receptores locais
+    private static final boolean PERMITIR_MEMORIA_COMPARTILHADA =
+            Boolean.parseBoolean(System.getProperty("transporte.memoriaCompartilhada", "true"));
+
+    // /dev/shm (Linux) mantém os arquivos mapeados só na memória, sem escrita em disco
+    static final Path DIRETORIO_COMPARTILHADO = Files.isDirectory(Paths.get("/dev/shm"))
+            && Files.isWritable(Paths.get("/dev/shm"))
+            ? Paths.get("/dev/shm") : Paths.get(System.getProperty("java.io.tmpdir"));
+
+    String host;
+    int porta;
+    Socket socket;
+    ObjectOutputStream out;
+    ObjectInputStream in;
+    private final Lock mutex = new ReentrantLock();
+    private volatile boolean usarCache = true;
+    // Passa a false quando o destino avisa que não tem cache: pula a consulta por chave
+    private volatile boolean cacheRemoto = true;
+    private boolean memoriaCompartilhada;
+
+    public ConexaoR(String host, int porta) throws IOException {
+        this.host = host;
+        this.porta = porta;
+        this.socket = new Socket(host, porta);
+        this.socket.setTcpNoDelay(true);
+        this.out = new ObjectOutputStream(socket.getOutputStream());
+        this.out.flush();
+        this.in = new ObjectInputStream(socket.getInputStream());
+        System.out.println("[LOG] Conectado a " + host + ":" + porta);
+
+        if (PERMITIR_MEMORIA_COMPARTILHADA && enderecoLocal(socket.getInetAddress())) {
+            this.memoriaCompartilhada = negociarMemoriaCompartilhada();
+            if (memoriaCompartilhada) {
+                System.out.println("[LOG] " + this + " usará memória compartilhada");
+            }
+        }
+    }
+
+    /**
+     * Verifica se o Receptor enxerga os arquivos mapeados por este processo
+     * (mesma máquina e mesmo diretório de memória compartilhada)
+     */
+    private boolean negociarMemoriaCompartilhada() throws IOException {
+        long marca = new SecureRandom().nextLong() | 1;
+        Path arquivo = Files.createTempFile(DIRETORIO_COMPARTILHADO, "ordenacao-", ".marca");
+        try {
+            try (BufferNativo mapeado = BufferNativo.mapear(arquivo, Long.BYTES)) {
+                mapeado.getByteBuffer().putLong(0, marca);
+            }
+            out.writeObject(new ComunicadoMemoriaCompartilhada(arquivo.toString(), marca));
+            out.flush();
+            out.reset();
+
+            Object obj = in.readObject();
+            return obj instanceof ComunicadoMemoriaCompartilhada
+                    && ((ComunicadoMemoriaCompartilhada) obj).getMarca() == marca;
+        } catch (ClassNotFoundException e) {
+            throw new IOException("Resposta inválida recebida de " + this);
+        } finally {
+            Files.deleteIfExists(arquivo);
+        }
+    }
+
+    private static boolean enderecoLocal(InetAddress endereco) {
+        try {
+            return endereco.isLoopbackAddress() || endereco.isAnyLocalAddress()
+                    || NetworkInterface.getByInetAddress(endereco) != null;
+        } catch (SocketException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Liga/desliga o cache do Receptor para os pedidos enviados por esta conexão
+     */
+    public void setUsarCache(boolean usarCache) {
+        this.usarCache = usarCache;
+    }
+
+    public Resposta enviarPedido(Pedido pedido) throws IOException, ClassNotFoundException {
+        return enviarPedido(pedido, null);
+    }
+
+    /**
+     * Envia um pedido; o vetor da Resposta recebida pelo socket vem do alocador indicado
+     * (null = alocação normal)
+     */
+    public Resposta enviarPedido(Pedido pedido, AlocadorBuffers alocador) throws IOException, ClassNotFoundException {
+        mutex.lock();
+        try {
+            // Vetores grandes: envia primeiro só a chave do conteúdo; o vetor só vai se faltar no cache
+            if (!usarCache) {
+                pedido.setUsarCache(false);
+            }
+            if (cacheRemoto && pedido.isUsarCache() && pedido.getTamanho() >= LIMIAR_CONSULTA_CACHE) {
+                out.writeObject(new PedidoPorHash(ChaveConteudo.calcular(pedido.getBuffer())));
+                out.flush();
+                out.reset();
+
+                Object obj = lerComAlocador(alocador);
+                if (obj instanceof Resposta) {
+                    System.out.println("[LOG] Resposta obtida do cache de " + this);
+                    return (Resposta) obj;
+                }
+                if (!(obj instanceof ComunicadoCacheAusente)) {
+                    throw new IOException("Resposta inválida recebida de " + this);
+                }
+                if (!((ComunicadoCacheAusente) obj).isCacheAtivo()) {
+                    cacheRemoto = false;
+                    System.out.println("[LOG] " + this + " não tem cache de resultados; consultas por chave desligadas");
+                }
+            }
+
+            // Receptor na mesma máquina: o vetor vai por um arquivo mapeado, sem serialização
+            if (memoriaCompartilhada && pedido.getClass() == Pedido.class
+                    && pedido.getTamanho() >= LIMIAR_MEMORIA_COMPARTILHADA) {
+                return enviarMapeado(pedido);
+            }
+
+            out.writeObject(pedido);
+            out.flush();
+            // Evita que o stream mantenha referências aos pedidos já enviados
+            out.reset();
+            System.out.println("[LOG] Pedido enviado para " + this);
+
+            Object obj = lerComAlocador(alocador);
+            if (obj instanceof Resposta) {
+                System.out.println("[LOG] Resposta recebida de " + this);
+                return (Resposta) obj;
+            }
+            throw new IOException("Resposta inválida recebida de " + this);
+        } finally {
+            mutex.unlock();
+        }
+    }
+
+    /**
+     * Lê o próximo objeto do stream usando o alocador indicado para o vetor da Resposta
+     * (null = alocação normal). Um ComunicadoErro vira IOException.
+     */
+    private Object lerComAlocador(AlocadorBuffers alocador) throws IOException, ClassNotFoundException {
+        AlocadorBuffers anterior = AlocadorBuffers.instalar(alocador);
+        Object obj;
+        try {
+            obj = in.readObject();
+        } finally {
+            AlocadorBuffers.instalar(anterior);
+        }
+        if (obj instanceof ComunicadoErro) {
+            throw new IOException("Erro em " + this + ": " + ((ComunicadoErro) obj).getMensagem());
+        }
+        return obj;
+    }
+
+    /**
+     * Copia o vetor para um arquivo mapeado e pede ao Receptor que o ordene ali mesmo.
+     * A Resposta devolvida aponta para o próprio mapeamento (liberar() o desfaz).
+     */
+    private Resposta enviarMapeado(Pedido pedido) throws IOException, ClassNotFoundException {
+        Path arquivo = Files.createTempFile(DIRETORIO_COMPARTILHADO, "ordenacao-", ".bin");
+        BufferNativo mapeado = null;
+        try {
+            mapeado = BufferNativo.mapear(arquivo, pedido.getTamanho());
+            mapeado.copiarDe(pedido.getBuffer());
+
+            out.writeObject(new PedidoMapeado(arquivo.toString(), pedido.getTamanho(), pedido.isUsarCache()));
+            out.flush();
+            out.reset();
+            System.out.println("[LOG] Pedido enviado por memória compartilhada para " + this);
+
+            Object obj = lerComAlocador(null);
+            if (!(obj instanceof RespostaMapeada)) {
+                throw new IOException("Resposta inválida recebida de " + this);
+            }
+            System.out.println("[LOG] Resposta recebida por memória compartilhada de " + this);
+            Resposta resposta = new Resposta(mapeado);
+            mapeado = null;
+            return resposta;
+        } finally {
+            if (mapeado != null) {
+                mapeado.liberar();
+            }
+            // Os dois lados já mapearam o arquivo (ou desistiram): o nome não é mais necessário
+            Files.deleteIfExists(arquivo);
+        }
+    }
+
+    /**
+     * Envia uma consulta (PedidoSelecao, PedidoContagem) e devolve o comunicado recebido.
+     * Consultas não passam pelo cache: o resultado é pequeno e não vale a chave.
+     */
+    public Comunicado enviarConsulta(Pedido consulta) throws IOException, ClassNotFoundException {
+        mutex.lock();
+        try {
+            out.writeObject(consulta);
+            out.flush();
+            out.reset();
+            System.out.println("[LOG] Consulta enviada para " + this);
+
+            Object obj = lerComAlocador(null);
+            if (obj instanceof Resposta || obj instanceof RespostaContagem) {
+                System.out.println("[LOG] Resultado da consulta recebido de " + this);
+                return (Comunicado) obj;
+            }
+            throw new IOException("Resposta inválida recebida de " + this);
+        } finally {
+            mutex.unlock();
+        }
+    }
+
+    /**
+     * Envia um comando da intercalação entre pares (PedidoRunGuardada, PedidoIntercalacaoPar,
+     * PedidoBuscarRun, ComunicadoDescartarRun) e devolve o comunicado recebido.
+     * Não passa pelo cache nem pela memória compartilhada. Se o Receptor responder
+     * ComunicadoErro, lança IOException (a conexão continua utilizável).
+     */
+    public Comunicado enviarComando(Comunicado comando) throws IOException, ClassNotFoundException {
+        mutex.lock();
+        try {
+            out.writeObject(comando);
+            out.flush();
+            out.reset();
+
+            Object obj = lerComAlocador(null);
+            if (obj instanceof Comunicado) {
+                return (Comunicado) obj;
+            }
+            throw new IOException("Resposta inválida recebida de " + this);
+        } finally {
+            mutex.unlock();
+        }
+    }
+
+    /**
+     * Verifica se o Receptor responde dentro do tempo limite.
+     * Se retornar false, o estado do stream é indefinido e a conexão deve ser descartada.
+     */
+    public boolean verificar(int tempoLimiteMs) {
+        mutex.lock();
+        try {
+            int anterior = socket.getSoTimeout();
+            socket.setSoTimeout(tempoLimiteMs);
+            try {
+                out.writeObject(new ComunicadoVerificacao());
+                out.flush();
+                out.reset();
+                return in.readObject() instanceof ComunicadoVerificacao;
+            } finally {
+                socket.setSoTimeout(anterior);
+            }
+        } catch (IOException | ClassNotFoundException e) {
+            System.err.println("[AVISO] Verificação falhou para " + this + ": " + e.getMessage());
+            return false;
+        } finally {
+            mutex.unlock();
+        }
+    }
+
+    public void enviarEncerramento() throws IOException {
+        mutex.lock();
+        try {
+            System.out.println("[LOG] Enviando encerramento para " + this);
+            out.writeObject(new ComunicadoEncerramento());
+            out.flush();
+        } finally {
+            mutex.unlock();
+        }
+    }
+
+    public void fechar() {
+        try {
+            if (socket != null && !socket.isClosed()) {
+                socket.close();
+                System.out.println("[LOG] Conexão fechada com " + this);
+            }
+        } catch (IOException e) {
+            System.err.println("[ERRO] Ao fechar conexão com " + this + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Endereço "host:porta", no mesmo formato usado nas listas de receptores
+     */
+    public String getEndereco() {
+        return host + ":" + porta;
+    }
+
+    @Override
+    public String toString() {
+        return getEndereco();
+    }
+}
@@ -0,0 +1,147 @@
+package src.Comunicacao;
+
+import java.util.*;
+
+/**
+ * Merge paralelo de vários vetores ordenados (2 a 2, em rodadas) com threads juntadoras.
+ * Usado pelo Distribuidor e pelos Receptores que atuam como nós intermediários.
+ */
+public class IntercalacaoParalela {
+
+    private static final int NUM_PROCESSADORES = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * Faz merge de múltiplos vetores ordenados usando threads juntadoras.
+     *
+     * Usa apenas duas áreas fora do heap do tamanho total, alternadas a cada rodada:
+     * cada rodada lê os vetores de uma área e escreve os pares intercalados na outra.
+     * Os buffers das respostas são liberados logo após a primeira rodada.
+     */
+    public static BufferNativo mergeComThreads(List<BufferNativo> vetores) throws InterruptedException {
+        if (vetores.size() == 1) {
+            return vetores.get(0);
+        }
+
+        int total = 0;
+        for (BufferNativo v : vetores) {
+            total += v.tamanho();
+        }
+
+        BufferNativo[] areas = { BufferNativo.alocar(total), BufferNativo.alocar(total) };
+        int areaAtual = 0;
+        List<BufferNativo> lista = new ArrayList<>(vetores);
+        int rodada = 1;
+
+        // Enquanto houver mais de um vetor, continua fazendo merge 2 a 2
+        while (lista.size() > 1) {
+            System.out.println("[LOG] Rodada de merge #" + rodada + " - " + lista.size() + " vetores");
+            
+            BufferNativo destino = areas[areaAtual];
+            List<BufferNativo> novaLista = new ArrayList<>();
+            int numPares = lista.size() / 2;
+            int numThreads = Math.min(NUM_PROCESSADORES, numPares);
+            int deslocamento = 0;
+            
+            // Se temos pares suficientes, usa threads para merge paralelo
+            if (numPares > 0 && numThreads > 0) {
+                // Calcula quantos pares cada thread vai processar (arredondado para cima)
+                int paresPorThread = (numPares + numThreads - 1) / numThreads;
+                List<ThreadJuntadora> threadsJuntadoras = new ArrayList<>();
+                
+                int parInicial = 0;
+                for (int t = 0; t < numThreads && parInicial < numPares; t++) {
+                    int inicioPar = parInicial * 2;
+                    int numParesThread = Math.min(paresPorThread, numPares - parInicial);
+                    int fimPar = inicioPar + numParesThread * 2;
+                    
+                    List<BufferNativo> subLista = lista.subList(inicioPar, fimPar);
+                    int tamanhoSubLista = 0;
+                    for (BufferNativo v : subLista) {
+                        tamanhoSubLista += v.tamanho();
+                    }
+
+                    ThreadJuntadora tj = new ThreadJuntadora(subLista,
+                            destino.fatia(deslocamento, deslocamento + tamanhoSubLista), t);
+                    tj.start();
+                    threadsJuntadoras.add(tj);
+                    
+                    System.out.println("[LOG] Thread juntadora " + t + " iniciada para processar " 
+                            + numParesThread + " par(es)");
+                    
+                    deslocamento += tamanhoSubLista;
+                    parInicial += numParesThread;
+                }
+                
+                // Aguarda threads juntadoras
+                for (ThreadJuntadora tj : threadsJuntadoras) {
+                    tj.join();
+                    novaLista.addAll(tj.getResultados());
+                    System.out.println("[LOG] Thread juntadora " + tj.id + " finalizou");
+                }
+            }
+            
+            // Se sobrou um vetor ímpar, copia-o para a área de destino
+            if (lista.size() % 2 == 1) {
+                BufferNativo impar = lista.get(lista.size() - 1);
+                BufferNativo copia = destino.fatia(deslocamento, deslocamento + impar.tamanho());
+                copia.copiarDe(impar);
+                novaLista.add(copia);
+                System.out.println("[LOG] Vetor ímpar adicionado para próxima rodada");
+            }
+
+            // Após a primeira rodada os buffers das respostas não são mais necessários
+            if (rodada == 1) {
+                for (BufferNativo v : vetores) {
+                    v.liberar();
+                }
+            }
+            
+            lista = novaLista;
+            areaAtual = 1 - areaAtual;
+            rodada++;
+        }
+
+        // O resultado ocupa a área inteira escrita por último
+        areas[areaAtual].liberar();
+        return areas[1 - areaAtual];
+    }
+
+    /**
+     * Thread que faz merge de pares de vetores ordenados
+     */
+    private static class ThreadJuntadora extends Thread {
+        private final List<BufferNativo> vetores;
+        private final BufferNativo destino;
+        private final int id;
+        private final List<BufferNativo> resultados;
+
+        public ThreadJuntadora(List<BufferNativo> vetores, BufferNativo destino, int id) {
+            super("Thread-Juntadora-" + id);
+            this.vetores = vetores;
+            this.destino = destino;
+            this.id = id;
+            this.resultados = new ArrayList<>();
+        }
+
+        @Override
+        public void run() {
+            int deslocamento = 0;
+
+            // Processa pares de vetores, escrevendo cada par em sequência na área de destino
+            for (int i = 0; i < vetores.size() - 1; i += 2) {
+                BufferNativo esquerda = vetores.get(i);
+                BufferNativo direita = vetores.get(i + 1);
+                int tamanho = esquerda.tamanho() + direita.tamanho();
+
+                BufferNativo merged = destino.fatia(deslocamento, deslocamento + tamanho);
+                Pedido.intercalar(esquerda, direita, merged);
+                resultados.add(merged);
+                deslocamento += tamanho;
+            }
+        }
+
+        public List<BufferNativo> getResultados() {
+            return resultados;
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package src.Comunicacao;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Escolha, em tempo de execução, do algoritmo usado para ordenar um bloco
+ * (caso base do Merge Sort do Receptor e ordenações sequenciais).
+ *
+ * Como os elementos são bytes, o kernel de contagem ordena qualquer bloco em duas
+ * passadas lineares sem desvios dependentes dos dados: conta os 256 valores e reescreve
+ * o bloco em ordem. Blocos pequenos ou já ordenados continuam com o Merge Sort adaptativo,
+ * que os resolve com uma única passada.
+ *
+ * O kernel pode ser fixado com -Dordenacao.kernel=auto|contagem|adaptativo (padrão auto).
+ */
+public class KernelOrdenacao {
+
+    /** Abaixo deste tamanho a contagem não compensa (256 contadores para poucos elementos) */
+    private static final int LIMIAR_CONTAGEM = 256;
+
+    private static final String KERNEL = System.getProperty("ordenacao.kernel", "auto");
+
+    // Contadores reaproveitados por thread: o caso base roda milhares de vezes por pedido
+    private static final ThreadLocal<long[]> CONTAGEM_DA_THREAD =
+            ThreadLocal.withInitial(() -> new long[SelecaoParcial.VALORES_POSSIVEIS]);
+
+    private KernelOrdenacao() {
+    }
+
+    /**
+     * Ordena o bloco no próprio lugar com o kernel mais adequado.
+     * O auxiliar deve ter o mesmo tamanho dos dados (só o Merge Sort o usa).
+     */
+    public static void ordenar(BufferNativo dados, BufferNativo aux) {
+        int n = dados.tamanho();
+        boolean contagem;
+        switch (KERNEL) {
+            case "contagem":
+                contagem = true;
+                break;
+            case "adaptativo":
+                contagem = false;
+                break;
+            default:
+                // Um bloco que já é uma única run sai sem nenhuma escrita
+                contagem = n >= LIMIAR_CONTAGEM && OrdenacaoAdaptativa.contarRun(dados, 0, n) < n;
+        }
+
+        if (contagem) {
+            ordenarPorContagem(dados);
+        } else {
+            OrdenacaoAdaptativa.ordenar(dados, aux);
+        }
+    }
+
+    /**
+     * Ordenação por contagem: conta os valores e reescreve o bloco em ordem crescente
+     */
+    public static void ordenarPorContagem(BufferNativo dados) {
+        long[] contagem = CONTAGEM_DA_THREAD.get();
+        SelecaoParcial.contar(dados, contagem);
+
+        ByteBuffer destino = dados.getByteBuffer();
+        byte[] bloco = BufferNativo.blocoDaThread();
+        for (int v = 0; v < SelecaoParcial.VALORES_POSSIVEIS; v++) {
+            long restante = contagem[v];
+            if (restante == 0) {
+                continue;
+            }
+            int n = (int) Math.min(restante, bloco.length);
+            Arrays.fill(bloco, 0, n, (byte) (v + Byte.MIN_VALUE));
+            while (restante > 0) {
+                int m = (int) Math.min(restante, n);
+                destino.put(bloco, 0, m);
+                restante -= m;
+            }
+        }
+    }
+
+    /**
+     * Nome do kernel configurado (para os logs)
+     */
+    public static String getKernel() {
+        return KERNEL;
+    }
+}
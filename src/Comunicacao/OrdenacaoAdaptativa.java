@@ -0,0 +1,393 @@
+package src.Comunicacao;
+
+/**
+ * Merge Sort adaptativo (no estilo do TimSort) para vetores de bytes.
+ *
+ * Em vez de dividir sempre ao meio, detecta as sequências já ordenadas ("runs")
+ * crescentes ou estritamente decrescentes (que são invertidas), estende runs curtas
+ * com inserção binária e as intercala usando uma pilha de runs balanceada.
+ * As intercalações usam galope (busca exponencial) para copiar blocos inteiros
+ * quando um dos lados "ganha" muitas vezes seguidas.
+ *
+ * Vetores já ordenados ou quase ordenados custam perto de O(n).
+ */
+public class OrdenacaoAdaptativa {
+
+    /** Abaixo deste tamanho o vetor todo é ordenado por inserção binária */
+    private static final int MIN_MERGE = 32;
+
+    /** Vitórias seguidas de um lado para entrar no modo galope */
+    private static final int MIN_GALOPE = 7;
+
+    /** Capacidade da pilha de runs (suficiente para qualquer vetor indexado por int) */
+    private static final int MAX_RUNS = 49;
+
+    private OrdenacaoAdaptativa() {
+    }
+
+    /**
+     * Ordena o buffer no próprio lugar. O auxiliar deve ter o mesmo tamanho
+     * (é usado nas mesmas posições dos dados durante as intercalações).
+     */
+    public static void ordenar(BufferNativo dados, BufferNativo aux) {
+        int n = dados.tamanho();
+        if (n < 2) {
+            return;
+        }
+
+        // Vetores pequenos: uma única run estendida por inserção binária
+        if (n < MIN_MERGE) {
+            int run = contarRun(dados, 0, n);
+            insercaoBinaria(dados, 0, n, run);
+            return;
+        }
+
+        int[] baseRun = new int[MAX_RUNS];
+        int[] tamanhoRun = new int[MAX_RUNS];
+        int numRuns = 0;
+
+        int minRun = calcularMinRun(n);
+        int inicio = 0;
+        int restante = n;
+
+        do {
+            int tamanho = contarRun(dados, inicio, inicio + restante);
+
+            // Run curta: estende até minRun com inserção binária
+            if (tamanho < minRun) {
+                int forcado = Math.min(restante, minRun);
+                insercaoBinaria(dados, inicio, inicio + forcado, inicio + tamanho);
+                tamanho = forcado;
+            }
+
+            baseRun[numRuns] = inicio;
+            tamanhoRun[numRuns] = tamanho;
+            numRuns++;
+            numRuns = colapsar(dados, aux, baseRun, tamanhoRun, numRuns, false);
+
+            inicio += tamanho;
+            restante -= tamanho;
+        } while (restante != 0);
+
+        colapsar(dados, aux, baseRun, tamanhoRun, numRuns, true);
+    }
+
+    /**
+     * Conta o tamanho da run que começa em "inicio" e, se ela for estritamente
+     * decrescente, a inverte para que fique crescente.
+     * @return tamanho da run (já crescente)
+     */
+    public static int contarRun(BufferNativo dados, int inicio, int fim) {
+        int i = inicio + 1;
+        if (i >= fim) {
+            return fim - inicio;
+        }
+
+        if (dados.get(i) < dados.get(inicio)) {
+            // Estritamente decrescente (a desigualdade estrita mantém a estabilidade)
+            while (i + 1 < fim && dados.get(i + 1) < dados.get(i)) {
+                i++;
+            }
+            dados.inverter(inicio, i + 1);
+        } else {
+            while (i + 1 < fim && dados.get(i + 1) >= dados.get(i)) {
+                i++;
+            }
+        }
+        return i + 1 - inicio;
+    }
+
+    /**
+     * Intercala no próprio lugar os trechos ordenados [inicio, meio) e [meio, fim).
+     * Os elementos que já estão na posição final são pulados com galope, então
+     * metades já em ordem custam apenas O(log n).
+     */
+    public static void intercalarNoLugar(BufferNativo dados, BufferNativo aux, int inicio, int meio, int fim) {
+        int base1 = inicio, tamanho1 = meio - inicio;
+        int base2 = meio, tamanho2 = fim - meio;
+        if (tamanho1 == 0 || tamanho2 == 0) {
+            return;
+        }
+
+        // Elementos do início da run 1 que são <= ao primeiro da run 2 já estão no lugar
+        int k = galoparDireita(dados.get(base2), dados, base1, tamanho1);
+        base1 += k;
+        tamanho1 -= k;
+        if (tamanho1 == 0) {
+            return;
+        }
+
+        // Elementos do fim da run 2 que são >= ao último da run 1 já estão no lugar
+        tamanho2 = galoparEsquerdaDoFim(dados.get(base1 + tamanho1 - 1), dados, base2, tamanho2);
+        if (tamanho2 == 0) {
+            return;
+        }
+
+        intercalarComGalope(dados, aux, base1, tamanho1, base2, tamanho2);
+    }
+
+    /**
+     * Mantém as invariantes da pilha de runs (tamanhos decrescendo mais rápido que Fibonacci),
+     * intercalando runs vizinhas quando necessário. Com "forcar", intercala tudo.
+     * @return novo número de runs na pilha
+     */
+    private static int colapsar(BufferNativo dados, BufferNativo aux, int[] baseRun, int[] tamanhoRun,
+                                int numRuns, boolean forcar) {
+        while (numRuns > 1) {
+            int n = numRuns - 2;
+            if (forcar) {
+                if (n > 0 && tamanhoRun[n - 1] < tamanhoRun[n + 1]) {
+                    n--;
+                }
+            } else if (n > 0 && tamanhoRun[n - 1] <= tamanhoRun[n] + tamanhoRun[n + 1]
+                    || n > 1 && tamanhoRun[n - 2] <= tamanhoRun[n - 1] + tamanhoRun[n]) {
+                if (tamanhoRun[n - 1] < tamanhoRun[n + 1]) {
+                    n--;
+                }
+            } else if (tamanhoRun[n] > tamanhoRun[n + 1]) {
+                break;
+            }
+
+            // Intercala as runs n e n + 1
+            int base1 = baseRun[n];
+            int base2 = baseRun[n + 1];
+            int tamanho2 = tamanhoRun[n + 1];
+            tamanhoRun[n] += tamanho2;
+            if (n == numRuns - 3) {
+                baseRun[n + 1] = baseRun[n + 2];
+                tamanhoRun[n + 1] = tamanhoRun[n + 2];
+            }
+            numRuns--;
+
+            intercalarNoLugar(dados, aux, base1, base2, base2 + tamanho2);
+        }
+        return numRuns;
+    }
+
+    /**
+     * Intercalação da run 1 (copiada para o auxiliar) com a run 2 (que fica nos dados),
+     * escrevendo da esquerda para a direita a partir de base1. Pressupõe que o primeiro
+     * elemento da run 2 é menor que o primeiro da run 1 e que o último da run 1 é maior
+     * que o último da run 2 (garantido pelo galope em intercalarNoLugar).
+     */
+    private static void intercalarComGalope(BufferNativo dados, BufferNativo aux,
+                                            int base1, int tamanho1, int base2, int tamanho2) {
+        aux.copiar(base1, dados, base1, tamanho1);
+
+        int c1 = base1, fim1 = base1 + tamanho1;
+        int c2 = base2, fim2 = base2 + tamanho2;
+        int k = base1;
+        int minGalope = MIN_GALOPE;
+
+        externo:
+        while (true) {
+            int vitorias1 = 0;
+            int vitorias2 = 0;
+
+            // Modo normal: compara um a um até um lado ganhar muitas vezes seguidas
+            do {
+                byte x = aux.get(c1);
+                byte y = dados.get(c2);
+                if (y < x) {
+                    dados.put(k++, y);
+                    c2++;
+                    vitorias2++;
+                    vitorias1 = 0;
+                    if (c2 == fim2) {
+                        break externo;
+                    }
+                } else {
+                    dados.put(k++, x);
+                    c1++;
+                    vitorias1++;
+                    vitorias2 = 0;
+                    if (c1 == fim1) {
+                        break externo;
+                    }
+                }
+            } while ((vitorias1 | vitorias2) < minGalope);
+
+            // Modo galope: procura blocos inteiros de um lado e copia de uma vez
+            int n1;
+            int n2;
+            do {
+                n1 = galoparDireita(dados.get(c2), aux, c1, fim1 - c1);
+                if (n1 > 0) {
+                    dados.copiar(k, aux, c1, n1);
+                    k += n1;
+                    c1 += n1;
+                    if (c1 == fim1) {
+                        break externo;
+                    }
+                }
+                dados.put(k++, dados.get(c2++));
+                if (c2 == fim2) {
+                    break externo;
+                }
+
+                n2 = galoparEsquerda(aux.get(c1), dados, c2, fim2 - c2);
+                if (n2 > 0) {
+                    // Mesmo buffer com destino antes da origem: cópia para frente é segura
+                    for (int i = 0; i < n2; i++) {
+                        dados.put(k++, dados.get(c2++));
+                    }
+                    if (c2 == fim2) {
+                        break externo;
+                    }
+                }
+                dados.put(k++, aux.get(c1++));
+                if (c1 == fim1) {
+                    break externo;
+                }
+                minGalope--;
+            } while (n1 >= MIN_GALOPE || n2 >= MIN_GALOPE);
+
+            // Penaliza a saída do modo galope para não alternar demais
+            if (minGalope < 0) {
+                minGalope = 0;
+            }
+            minGalope += 2;
+        }
+
+        // O que sobrou da run 1 vai para o fim; o que sobrou da run 2 já está no lugar
+        if (c1 < fim1) {
+            dados.copiar(k, aux, c1, fim1 - c1);
+        }
+    }
+
+    /**
+     * Quantos elementos de [base, base + tamanho) são <= chave (busca exponencial a partir do início)
+     */
+    private static int galoparDireita(byte chave, BufferNativo v, int base, int tamanho) {
+        if (tamanho == 0 || v.get(base) > chave) {
+            return 0;
+        }
+        int lo = 0;
+        int hi = 1;
+        while (hi < tamanho && v.get(base + hi) <= chave) {
+            lo = hi;
+            hi = (hi << 1) + 1;
+        }
+        if (hi > tamanho) {
+            hi = tamanho;
+        }
+
+        // v[lo] <= chave e (hi == tamanho ou v[hi] > chave)
+        lo++;
+        while (lo < hi) {
+            int m = (lo + hi) >>> 1;
+            if (v.get(base + m) <= chave) {
+                lo = m + 1;
+            } else {
+                hi = m;
+            }
+        }
+        return lo;
+    }
+
+    /**
+     * Quantos elementos de [base, base + tamanho) são < chave (busca exponencial a partir do início)
+     */
+    private static int galoparEsquerda(byte chave, BufferNativo v, int base, int tamanho) {
+        if (tamanho == 0 || v.get(base) >= chave) {
+            return 0;
+        }
+        int lo = 0;
+        int hi = 1;
+        while (hi < tamanho && v.get(base + hi) < chave) {
+            lo = hi;
+            hi = (hi << 1) + 1;
+        }
+        if (hi > tamanho) {
+            hi = tamanho;
+        }
+
+        // v[lo] < chave e (hi == tamanho ou v[hi] >= chave)
+        lo++;
+        while (lo < hi) {
+            int m = (lo + hi) >>> 1;
+            if (v.get(base + m) < chave) {
+                lo = m + 1;
+            } else {
+                hi = m;
+            }
+        }
+        return lo;
+    }
+
+    /**
+     * Quantos elementos de [base, base + tamanho) são < chave (busca exponencial a partir do fim)
+     */
+    private static int galoparEsquerdaDoFim(byte chave, BufferNativo v, int base, int tamanho) {
+        if (tamanho == 0 || v.get(base + tamanho - 1) < chave) {
+            return tamanho;
+        }
+        int hi = tamanho - 1;
+        int lo;
+        int salto = 1;
+        while (true) {
+            int indice = tamanho - 1 - salto;
+            if (indice < 0) {
+                lo = -1;
+                break;
+            }
+            if (v.get(base + indice) < chave) {
+                lo = indice;
+                break;
+            }
+            hi = indice;
+            salto = (salto << 1) + 1;
+        }
+
+        // (lo == -1 ou v[lo] < chave) e v[hi] >= chave
+        lo++;
+        while (lo < hi) {
+            int m = (lo + hi) >>> 1;
+            if (v.get(base + m) < chave) {
+                lo = m + 1;
+            } else {
+                hi = m;
+            }
+        }
+        return lo;
+    }
+
+    /**
+     * Ordena [inicio, fim) por inserção binária, sabendo que [inicio, ordenadoAte) já está ordenado
+     */
+    private static void insercaoBinaria(BufferNativo dados, int inicio, int fim, int ordenadoAte) {
+        for (int i = Math.max(ordenadoAte, inicio + 1); i < fim; i++) {
+            byte pivo = dados.get(i);
+
+            // Posição após os iguais (mantém estabilidade)
+            int lo = inicio;
+            int hi = i;
+            while (lo < hi) {
+                int m = (lo + hi) >>> 1;
+                if (pivo < dados.get(m)) {
+                    hi = m;
+                } else {
+                    lo = m + 1;
+                }
+            }
+
+            for (int j = i; j > lo; j--) {
+                dados.put(j, dados.get(j - 1));
+            }
+            dados.put(lo, pivo);
+        }
+    }
+
+    /**
+     * Tamanho mínimo de run: entre MIN_MERGE/2 e MIN_MERGE, escolhido para que
+     * n / minRun seja (quase) uma potência de 2 e as intercalações fiquem balanceadas
+     */
+    private static int calcularMinRun(int n) {
+        int r = 0;
+        while (n >= MIN_MERGE) {
+            r |= (n & 1);
+            n >>= 1;
+        }
+        return n + r;
+    }
+}
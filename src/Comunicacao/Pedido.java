@@ -1,73 +1,111 @@
 package src.Comunicacao;
 
+import java.io.*;
+
 public class Pedido extends Comunicado {
-    private final byte[] numeros;
+    // O vetor é serializado manualmente (writeObject/readObject) direto de/para memória fora do heap
+    private transient BufferNativo numeros;
+    // false: o Receptor não consulta nem alimenta o cache de resultados (ex.: medições)
+    private boolean usarCache = true;
 
     public Pedido(byte[] numeros) {
+        this.numeros = BufferNativo.envolver(numeros);
+    }
+
+    public Pedido(BufferNativo numeros) {
         this.numeros = numeros;
     }
 
+    /**
+     * Retorna o vetor no heap (copia se o pedido estiver em buffer nativo)
+     */
     public byte[] getNumeros() {
+        return numeros.paraVetor();
+    }
+
+    public BufferNativo getBuffer() {
         return numeros;
     }
 
+    public int getTamanho() {
+        return numeros.tamanho();
+    }
+
+    public boolean isUsarCache() {
+        return usarCache;
+    }
+
+    public void setUsarCache(boolean usarCache) {
+        this.usarCache = usarCache;
+    }
+
     /**
-     * Ordena o vetor usando Merge Sort
-     * @return vetor ordenado
+     * Ordena o vetor (ver ordenar(BufferNativo, BufferNativo))
+     * @return vetor ordenado (novo vetor; o original não é alterado)
      */
     public byte[] ordenar() {
-        if (numeros == null || numeros.length <= 1) {
-            return numeros;
+        byte[] vetor = getNumeros();
+        if (vetor == null || vetor.length <= 1) {
+            return vetor;
         }
-        return mergeSort(numeros, 0, numeros.length - 1);
+        byte[] resultado = vetor.clone();
+        ordenar(BufferNativo.envolver(resultado), BufferNativo.envolver(new byte[resultado.length]));
+        return resultado;
     }
 
     /**
-     * Implementação recursiva do Merge Sort
+     * Ordena o buffer no próprio lugar: contagem para blocos embaralhados, Merge Sort
+     * adaptativo para blocos pequenos ou já ordenados (ver KernelOrdenacao).
+     * O auxiliar deve ter o mesmo tamanho dos dados.
      */
-    private byte[] mergeSort(byte[] arr, int inicio, int fim) {
-        if (inicio >= fim) {
-            return new byte[]{arr[inicio]};
-        }
-
-        int meio = inicio + (fim - inicio) / 2;
-
-        // Ordena recursivamente cada metade
-        byte[] esquerda = mergeSort(arr, inicio, meio);
-        byte[] direita = mergeSort(arr, meio + 1, fim);
-
-        // Faz o merge das duas metades ordenadas
-        return merge(esquerda, direita);
+    public static void ordenar(BufferNativo dados, BufferNativo aux) {
+        KernelOrdenacao.ordenar(dados, aux);
     }
 
     /**
-     * Faz o merge (intercalação) de dois vetores ordenados
+     * Intercala dois buffers ordenados em destino (tamanho = soma dos dois)
      */
-    private byte[] merge(byte[] esquerda, byte[] direita) {
-        byte[] resultado = new byte[esquerda.length + direita.length];
+    public static void intercalar(BufferNativo esquerda, BufferNativo direita, BufferNativo destino) {
         int i = 0, j = 0, k = 0;
+        int nEsq = esquerda.tamanho(), nDir = direita.tamanho();
+
+        // Vetores que já estão em ordem entre si: basta copiar em sequência
+        if (nEsq == 0 || nDir == 0 || esquerda.get(nEsq - 1) <= direita.get(0)) {
+            destino.copiar(0, esquerda, 0, nEsq);
+            destino.copiar(nEsq, direita, 0, nDir);
+            return;
+        }
 
-        // Compara e intercala elementos
-        while (i < esquerda.length && j < direita.length) {
-            if (esquerda[i] <= direita[j]) {
-                resultado[k++] = esquerda[i++];
+        while (i < nEsq && j < nDir) {
+            byte a = esquerda.get(i);
+            byte b = direita.get(j);
+            if (a <= b) {
+                destino.put(k++, a);
+                i++;
             } else {
-                resultado[k++] = direita[j++];
+                destino.put(k++, b);
+                j++;
             }
         }
 
-        // Copia elementos restantes de esquerda (se houver)
-        while (i < esquerda.length) {
-            resultado[k++] = esquerda[i++];
+        while (i < nEsq) {
+            destino.put(k++, esquerda.get(i++));
         }
 
-        // Copia elementos restantes de direita (se houver)
-        while (j < direita.length) {
-            resultado[k++] = direita[j++];
+        while (j < nDir) {
+            destino.put(k++, direita.get(j++));
         }
-
-        return resultado;
     }
-}
 
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+        out.writeInt(numeros.tamanho());
+        numeros.escreverEm(out);
+    }
 
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        numeros = BufferNativo.alocarRecebido(in);
+        numeros.lerDe(in);
+    }
+}
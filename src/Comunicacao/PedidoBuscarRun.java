@@ -0,0 +1,29 @@
+package src.Comunicacao;
+
+/**
+ * Busca uma run guardada no Receptor, que vem em uma Resposta. Por padrão ela deixa de
+ * existir lá depois de enviada; sem "consumir" ela continua guardada (o Receptor que a
+ * intercala só a descarta com ComunicadoDescartarRun depois de terminar).
+ */
+public class PedidoBuscarRun extends Comunicado {
+
+    private final String id;
+    private final boolean consumir;
+
+    public PedidoBuscarRun(String id) {
+        this(id, true);
+    }
+
+    public PedidoBuscarRun(String id, boolean consumir) {
+        this.id = id;
+        this.consumir = consumir;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public boolean isConsumir() {
+        return consumir;
+    }
+}
@@ -0,0 +1,12 @@
+package src.Comunicacao;
+
+/**
+ * Pedido de contagem de valores da partição, usado nas consultas de k-ésimo elemento
+ * e de quantis. O Receptor responde com RespostaContagem.
+ */
+public class PedidoContagem extends Pedido {
+
+    public PedidoContagem(BufferNativo numeros) {
+        super(numeros);
+    }
+}
@@ -0,0 +1,94 @@
+package src.Comunicacao;
+
+import java.util.*;
+
+/**
+ * Pedido enviado a um Receptor que atua como nó intermediário da árvore.
+ *
+ * Além do vetor, carrega os endereços ("host:porta") de todos os Receptores da
+ * subárvore abaixo dele e o grau (fan-out) da árvore. O nó divide esses endereços
+ * em até "grau" grupos: o primeiro endereço de cada grupo é um filho direto e o
+ * restante do grupo é a subárvore desse filho.
+ */
+public class PedidoHierarquico extends Pedido {
+
+    private final String[] subarvore;
+    private final int grau;
+
+    public PedidoHierarquico(BufferNativo numeros, List<String> subarvore, int grau) {
+        super(numeros);
+        this.subarvore = subarvore.toArray(new String[0]);
+        this.grau = grau;
+    }
+
+    public List<String> getSubarvore() {
+        return Arrays.asList(subarvore);
+    }
+
+    public int getGrau() {
+        return grau;
+    }
+
+    /**
+     * Divide os nós em até "grau" grupos contíguos de tamanhos quase iguais.
+     * O primeiro nó de cada grupo é a raiz do grupo; os demais formam sua subárvore.
+     * Com grau <= 0 cada nó vira um grupo próprio (topologia plana).
+     */
+    public static List<List<String>> dividirEmSubarvores(List<String> nos, int grau) {
+        int numGrupos = grau <= 0 ? nos.size() : Math.min(grau, nos.size());
+        List<List<String>> grupos = new ArrayList<>();
+        if (numGrupos == 0) {
+            return grupos;
+        }
+
+        int tamanhoGrupo = nos.size() / numGrupos;
+        int resto = nos.size() % numGrupos;
+        int inicio = 0;
+        for (int i = 0; i < numGrupos; i++) {
+            int fim = inicio + tamanhoGrupo + (i < resto ? 1 : 0);
+            grupos.add(new ArrayList<>(nos.subList(inicio, fim)));
+            inicio = fim;
+        }
+        return grupos;
+    }
+
+    /**
+     * Menor grau que permite organizar "numNos" nós em no máximo "profundidade" níveis
+     */
+    public static int grauParaProfundidade(int numNos, int profundidade) {
+        if (profundidade <= 0) {
+            return 0;
+        }
+        for (int grau = 1; grau < numNos; grau++) {
+            long capacidade = 0;
+            long nivel = 1;
+            for (int p = 0; p < profundidade; p++) {
+                nivel *= grau;
+                capacidade += nivel;
+            }
+            if (capacidade >= numNos) {
+                return grau;
+            }
+        }
+        return numNos;
+    }
+
+    /**
+     * Divide "total" elementos proporcionalmente aos pesos informados
+     * @return vetor com o início de cada parte, mais o total na última posição
+     */
+    public static int[] dividirProporcional(int total, int[] pesos) {
+        long somaPesos = 0;
+        for (int p : pesos) {
+            somaPesos += p;
+        }
+
+        int[] limites = new int[pesos.length + 1];
+        long acumulado = 0;
+        for (int i = 0; i < pesos.length; i++) {
+            acumulado += pesos[i];
+            limites[i + 1] = (int) (total * acumulado / somaPesos);
+        }
+        return limites;
+    }
+}
@@ -0,0 +1,32 @@
+package src.Comunicacao;
+
+/**
+ * Pede a um Receptor que busque a run guardada em outro Receptor (o parceiro),
+ * intercale-a com uma run própria e guarde o resultado.
+ * As duas runs de origem só deixam de existir se a intercalação terminar; a resposta é
+ * um RespostaRunGuardada (ou ComunicadoErro, e as duas continuam guardadas).
+ */
+public class PedidoIntercalacaoPar extends Comunicado {
+
+    private final String idLocal;
+    private final String enderecoParceiro;
+    private final String idParceiro;
+
+    public PedidoIntercalacaoPar(String idLocal, String enderecoParceiro, String idParceiro) {
+        this.idLocal = idLocal;
+        this.enderecoParceiro = enderecoParceiro;
+        this.idParceiro = idParceiro;
+    }
+
+    public String getIdLocal() {
+        return idLocal;
+    }
+
+    public String getEnderecoParceiro() {
+        return enderecoParceiro;
+    }
+
+    public String getIdParceiro() {
+        return idParceiro;
+    }
+}
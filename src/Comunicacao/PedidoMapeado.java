@@ -0,0 +1,31 @@
+package src.Comunicacao;
+
+/**
+ * Pedido de ordenação por memória compartilhada: o vetor não vem no stream, e sim
+ * em um arquivo mapeado pelos dois processos. O Receptor ordena o vetor no próprio
+ * arquivo e responde com RespostaMapeada.
+ */
+public class PedidoMapeado extends Comunicado {
+
+    private final String arquivo;
+    private final int tamanho;
+    private final boolean usarCache;
+
+    public PedidoMapeado(String arquivo, int tamanho, boolean usarCache) {
+        this.arquivo = arquivo;
+        this.tamanho = tamanho;
+        this.usarCache = usarCache;
+    }
+
+    public String getArquivo() {
+        return arquivo;
+    }
+
+    public int getTamanho() {
+        return tamanho;
+    }
+
+    public boolean isUsarCache() {
+        return usarCache;
+    }
+}
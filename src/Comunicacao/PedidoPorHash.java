@@ -0,0 +1,19 @@
+package src.Comunicacao;
+
+/**
+ * Consulta ao cache do Receptor: envia só a chave do conteúdo da partição.
+ * O Receptor responde com Resposta (acerto) ou ComunicadoCacheAusente (falta),
+ * e nesse caso o vetor completo é enviado em seguida como um Pedido normal.
+ */
+public class PedidoPorHash extends Comunicado {
+
+    private final ChaveConteudo chave;
+
+    public PedidoPorHash(ChaveConteudo chave) {
+        this.chave = chave;
+    }
+
+    public ChaveConteudo getChave() {
+        return chave;
+    }
+}
@@ -0,0 +1,13 @@
+package src.Comunicacao;
+
+/**
+ * Pedido de ordenação em que o vetor ordenado fica guardado no Receptor.
+ * A resposta é só um RespostaRunGuardada com o identificador da run, usado depois
+ * em PedidoIntercalacaoPar, PedidoBuscarRun ou ComunicadoDescartarRun.
+ */
+public class PedidoRunGuardada extends Pedido {
+
+    public PedidoRunGuardada(BufferNativo numeros) {
+        super(numeros);
+    }
+}
@@ -0,0 +1,25 @@
+package src.Comunicacao;
+
+/**
+ * Pedido de seleção parcial: o Receptor devolve (em uma Resposta) apenas os k menores
+ * ou os k maiores valores da partição, em ordem crescente, sem ordenar o resto
+ */
+public class PedidoSelecao extends Pedido {
+
+    private final int k;
+    private final boolean maiores;
+
+    public PedidoSelecao(BufferNativo numeros, int k, boolean maiores) {
+        super(numeros);
+        this.k = k;
+        this.maiores = maiores;
+    }
+
+    public int getK() {
+        return k;
+    }
+
+    public boolean isMaiores() {
+        return maiores;
+    }
+}
@@ -0,0 +1,26 @@
+package src.Comunicacao;
+
+/**
+ * Pedido enviado por um cliente ao ServicoOrdenacao, com prioridade
+ * (valores menores são atendidos primeiro)
+ */
+public class PedidoTrabalho extends Pedido {
+
+    public static final int PRIORIDADE_NORMAL = 5;
+
+    private final int prioridade;
+
+    public PedidoTrabalho(BufferNativo numeros, int prioridade) {
+        super(numeros);
+        this.prioridade = prioridade;
+    }
+
+    public PedidoTrabalho(byte[] numeros, int prioridade) {
+        super(numeros);
+        this.prioridade = prioridade;
+    }
+
+    public int getPrioridade() {
+        return prioridade;
+    }
+}
@@ -0,0 +1,97 @@
+package src.Comunicacao;
+
+import java.util.*;
+
+/**
+ * Pool de blocos fora do heap de tamanho fixo, reaproveitados entre pedidos.
+ *
+ * emprestar() devolve uma fatia de um bloco livre (ou de um bloco novo, até o limite
+ * de blocos); devolver() põe o bloco de volta na lista de livres. Buffers que não
+ * vieram do pool são simplesmente liberados em devolver().
+ */
+public class PoolBuffers implements AlocadorBuffers {
+
+    private final int tamanhoBloco;
+    private final int maxBlocos;
+    private final Deque<BufferNativo> livres = new ArrayDeque<>();
+    private final Map<BufferNativo, BufferNativo> emprestados = new IdentityHashMap<>();
+    private int blocosCriados;
+    private long reutilizacoes;
+
+    public PoolBuffers(int tamanhoBloco, int maxBlocos) {
+        this.tamanhoBloco = tamanhoBloco;
+        this.maxBlocos = maxBlocos;
+    }
+
+    /**
+     * Empresta um buffer de "tamanho" bytes (no máximo o tamanho do bloco).
+     * Espera se todos os blocos estiverem emprestados.
+     */
+    public synchronized BufferNativo emprestar(int tamanho) throws InterruptedException {
+        if (tamanho > tamanhoBloco) {
+            throw new IllegalArgumentException("Buffer de " + tamanho + " bytes maior que o bloco do pool (" +
+                    tamanhoBloco + ")");
+        }
+        while (livres.isEmpty() && blocosCriados >= maxBlocos) {
+            wait();
+        }
+
+        BufferNativo bloco;
+        if (livres.isEmpty()) {
+            bloco = BufferNativo.alocar(tamanhoBloco);
+            blocosCriados++;
+        } else {
+            bloco = livres.pop();
+            reutilizacoes++;
+        }
+        BufferNativo fatia = bloco.fatia(0, tamanho);
+        emprestados.put(fatia, bloco);
+        return fatia;
+    }
+
+    public synchronized void devolver(BufferNativo buffer) {
+        BufferNativo bloco = emprestados.remove(buffer);
+        if (bloco == null) {
+            buffer.liberar();
+            return;
+        }
+        livres.push(bloco);
+        notifyAll();
+    }
+
+    /**
+     * Uso como alocador de desserialização: buffers que cabem no bloco vêm do pool
+     */
+    @Override
+    public BufferNativo alocar(int tamanho) {
+        if (tamanho > tamanhoBloco) {
+            return BufferNativo.alocar(tamanho);
+        }
+        try {
+            return emprestar(tamanho);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return BufferNativo.alocar(tamanho);
+        }
+    }
+
+    /**
+     * Libera todos os blocos livres (os emprestados são liberados quando voltarem)
+     */
+    public synchronized void encerrar() {
+        for (BufferNativo bloco : livres) {
+            bloco.liberar();
+        }
+        livres.clear();
+    }
+
+    public int getTamanhoBloco() {
+        return tamanhoBloco;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("blocos de %.1f MB: %d criado(s), %d reutilização(ões)",
+                tamanhoBloco / 1048576.0, blocosCriados, reutilizacoes);
+    }
+}
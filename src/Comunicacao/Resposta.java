@@ -1,16 +1,40 @@
 package src.Comunicacao;
 
+import java.io.*;
+
 public class Resposta extends Comunicado {
 
-    private final byte[] vetorOrdenado;
+    // O vetor é serializado manualmente (writeObject/readObject) direto de/para memória fora do heap
+    private transient BufferNativo vetorOrdenado;
 
     public Resposta(byte[] vetorOrdenado) {
+        this.vetorOrdenado = BufferNativo.envolver(vetorOrdenado);
+    }
+
+    public Resposta(BufferNativo vetorOrdenado) {
         this.vetorOrdenado = vetorOrdenado;
     }
 
+    /**
+     * Retorna o vetor no heap (copia se a resposta estiver em buffer nativo)
+     */
     public byte[] getVetor() {
+        return vetorOrdenado.paraVetor();
+    }
+
+    public BufferNativo getBuffer() {
         return vetorOrdenado;
     }
-}
 
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+        out.writeInt(vetorOrdenado.tamanho());
+        vetorOrdenado.escreverEm(out);
+    }
 
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        vetorOrdenado = BufferNativo.alocarRecebido(in);
+        vetorOrdenado.lerDe(in);
+    }
+}
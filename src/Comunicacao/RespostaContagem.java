@@ -0,0 +1,18 @@
+package src.Comunicacao;
+
+/**
+ * Quantidade de ocorrências de cada valor de byte em uma partição
+ * (índice = valor - Byte.MIN_VALUE). Tem tamanho fixo, qualquer que seja a partição.
+ */
+public class RespostaContagem extends Comunicado {
+
+    private final long[] contagem;
+
+    public RespostaContagem(long[] contagem) {
+        this.contagem = contagem;
+    }
+
+    public long[] getContagem() {
+        return contagem;
+    }
+}
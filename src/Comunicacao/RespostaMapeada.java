@@ -0,0 +1,7 @@
+package src.Comunicacao;
+
+/**
+ * Aviso de que o vetor de um PedidoMapeado já está ordenado no arquivo compartilhado
+ */
+public class RespostaMapeada extends Comunicado {
+}
@@ -0,0 +1,23 @@
+package src.Comunicacao;
+
+/**
+ * Identificador de uma run ordenada guardada em um Receptor
+ */
+public class RespostaRunGuardada extends Comunicado {
+
+    private final String id;
+    private final int tamanho;
+
+    public RespostaRunGuardada(String id, int tamanho) {
+        this.id = id;
+        this.tamanho = tamanho;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public int getTamanho() {
+        return tamanho;
+    }
+}
@@ -0,0 +1,202 @@
+package src.Comunicacao;
+
+import java.nio.ByteBuffer;
+import java.util.*;
+
+/**
+ * Seleção parcial (top-K, k-ésimo elemento, quantis) sem ordenar o vetor inteiro.
+ *
+ * Top-K usa quickselect com partição em três vias (menores / iguais / maiores ao pivô),
+ * o que mantém o custo linear mesmo com muitos valores repetidos, e ordena só os k
+ * selecionados. Como os elementos são bytes, k-ésimo e quantis usam a contagem dos
+ * 256 valores possíveis: cada nó devolve 256 contadores, qualquer que seja n.
+ */
+public class SelecaoParcial {
+
+    public static final int VALORES_POSSIVEIS = 256;
+
+    /**
+     * Reorganiza o buffer de modo que a posição indicada receba o elemento que teria se o
+     * buffer estivesse ordenado, com valores menores ou iguais antes e maiores ou iguais depois
+     */
+    public static void selecionar(BufferNativo dados, int posicao) {
+        int inicio = 0, fim = dados.tamanho();
+        while (fim - inicio > 1) {
+            byte pivo = medianaDeTres(dados.get(inicio), dados.get((inicio + fim) >>> 1), dados.get(fim - 1));
+
+            // Partição em três vias: [inicio, lt) < pivo, [lt, gt) == pivo, [gt, fim) > pivo
+            int lt = inicio, i = inicio, gt = fim;
+            while (i < gt) {
+                byte valor = dados.get(i);
+                if (valor < pivo) {
+                    trocar(dados, lt++, i++);
+                } else if (valor > pivo) {
+                    trocar(dados, i, --gt);
+                } else {
+                    i++;
+                }
+            }
+
+            if (posicao < lt) {
+                fim = lt;
+            } else if (posicao >= gt) {
+                inicio = gt;
+            } else {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Seleciona os k menores valores e os ordena
+     * @return fatia do próprio buffer (posições [0, k)) em ordem crescente
+     */
+    public static BufferNativo menores(BufferNativo dados, int k) {
+        k = Math.min(k, dados.tamanho());
+        if (k <= 0) {
+            return dados.fatia(0, 0);
+        }
+        if (k < dados.tamanho()) {
+            selecionar(dados, k - 1);
+        }
+        BufferNativo selecionados = dados.fatia(0, k);
+        ordenarSelecionados(selecionados);
+        return selecionados;
+    }
+
+    /**
+     * Seleciona os k maiores valores e os ordena
+     * @return fatia do próprio buffer (últimas k posições) em ordem crescente
+     */
+    public static BufferNativo maiores(BufferNativo dados, int k) {
+        int n = dados.tamanho();
+        k = Math.min(k, n);
+        if (k <= 0) {
+            return dados.fatia(n, n);
+        }
+        if (k < n) {
+            selecionar(dados, n - k);
+        }
+        BufferNativo selecionados = dados.fatia(n - k, n);
+        ordenarSelecionados(selecionados);
+        return selecionados;
+    }
+
+    /**
+     * Conta as ocorrências de cada valor (índice = valor - Byte.MIN_VALUE)
+     */
+    public static long[] contar(BufferNativo dados) {
+        long[] contagem = new long[VALORES_POSSIVEIS];
+        contar(dados, contagem);
+        return contagem;
+    }
+
+    /**
+     * Mesma contagem, em um vetor de VALORES_POSSIVEIS posições já existente (zerado aqui)
+     */
+    public static void contar(BufferNativo dados, long[] contagem) {
+        Arrays.fill(contagem, 0);
+        ByteBuffer origem = dados.getByteBuffer();
+        byte[] bloco = BufferNativo.blocoDaThread();
+        while (origem.hasRemaining()) {
+            int n = Math.min(bloco.length, origem.remaining());
+            origem.get(bloco, 0, n);
+            for (int i = 0; i < n; i++) {
+                contagem[bloco[i] - Byte.MIN_VALUE]++;
+            }
+        }
+    }
+
+    /**
+     * Soma contagens parciais (uma por nó)
+     */
+    public static long[] somar(List<long[]> parciais) {
+        long[] total = new long[VALORES_POSSIVEIS];
+        for (long[] parcial : parciais) {
+            for (int v = 0; v < VALORES_POSSIVEIS; v++) {
+                total[v] += parcial[v];
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Valor que ocuparia a posição indicada (a partir de 0) no vetor ordenado
+     */
+    public static byte elementoNaPosicao(long[] contagem, long posicao) {
+        long acumulado = 0;
+        for (int v = 0; v < VALORES_POSSIVEIS; v++) {
+            acumulado += contagem[v];
+            if (posicao < acumulado) {
+                return (byte) (v + Byte.MIN_VALUE);
+            }
+        }
+        throw new IllegalArgumentException("Posição " + posicao + " fora do vetor (tamanho " + acumulado + ")");
+    }
+
+    /**
+     * Combina os resultados parciais de vários nós (cada um já em ordem crescente),
+     * mantendo só os k menores ou os k maiores. Os parciais não são liberados aqui.
+     * @return novo buffer com até k elementos em ordem crescente
+     */
+    public static BufferNativo combinar(List<BufferNativo> parciais, int k, boolean maiores) {
+        BufferNativo atual = BufferNativo.alocar(0);
+        for (BufferNativo parcial : parciais) {
+            BufferNativo destino = BufferNativo.alocar(Math.min(k, atual.tamanho() + parcial.tamanho()));
+            if (maiores) {
+                intercalarDoFim(atual, parcial, destino);
+            } else {
+                intercalarDoInicio(atual, parcial, destino);
+            }
+            atual.liberar();
+            atual = destino;
+        }
+        return atual;
+    }
+
+    /**
+     * Intercala até encher o destino, começando pelos menores
+     */
+    private static void intercalarDoInicio(BufferNativo a, BufferNativo b, BufferNativo destino) {
+        int i = 0, j = 0;
+        for (int k = 0; k < destino.tamanho(); k++) {
+            if (j >= b.tamanho() || (i < a.tamanho() && a.get(i) <= b.get(j))) {
+                destino.put(k, a.get(i++));
+            } else {
+                destino.put(k, b.get(j++));
+            }
+        }
+    }
+
+    /**
+     * Intercala até encher o destino, começando pelos maiores (preenche de trás para frente)
+     */
+    private static void intercalarDoFim(BufferNativo a, BufferNativo b, BufferNativo destino) {
+        int i = a.tamanho() - 1, j = b.tamanho() - 1;
+        for (int k = destino.tamanho() - 1; k >= 0; k--) {
+            if (j < 0 || (i >= 0 && a.get(i) > b.get(j))) {
+                destino.put(k, a.get(i--));
+            } else {
+                destino.put(k, b.get(j--));
+            }
+        }
+    }
+
+    private static void ordenarSelecionados(BufferNativo selecionados) {
+        try (BufferNativo aux = BufferNativo.alocar(selecionados.tamanho())) {
+            Pedido.ordenar(selecionados, aux);
+        }
+    }
+
+    private static byte medianaDeTres(byte a, byte b, byte c) {
+        if (a > b) { byte t = a; a = b; b = t; }
+        if (b > c) { b = c; }
+        return a > b ? a : b;
+    }
+
+    private static void trocar(BufferNativo dados, int i, int j) {
+        byte t = dados.get(i);
+        dados.put(i, dados.get(j));
+        dados.put(j, t);
+    }
+}
@@ -0,0 +1,224 @@
+package src.Distribuidor;
+
+import java.util.*;
+import java.util.function.Function;
+import src.Comunicacao.*;
+
+/**
+ * Consultas de seleção distribuídas: k menores/maiores, k-ésimo elemento e quantis.
+ *
+ * Ao contrário da ordenação, cada Receptor devolve apenas um resultado parcial pequeno
+ * (até k elementos, ou 256 contadores) e o Distribuidor combina só esses parciais:
+ * o retorno pela rede e o trabalho de combinação dependem de k, não de n.
+ *
+ * Uso:
+ *   java -cp . src.Distribuidor.ConsultaSelecao <host:porta,...> <tamanho> menores|maiores <k>
+ *   java -cp . src.Distribuidor.ConsultaSelecao <host:porta,...> <tamanho> kesimo <k>
+ *   java -cp . src.Distribuidor.ConsultaSelecao <host:porta,...> <tamanho> quantis <q1,q2,...>
+ */
+public class ConsultaSelecao {
+
+    public static void main(String[] args) {
+        if (args.length < 4) {
+            System.err.println("Uso: ConsultaSelecao <host:porta,...> <tamanho> menores|maiores|kesimo|quantis <parâmetro>");
+            return;
+        }
+
+        List<ConexaoR> conexoes = new ArrayList<>();
+        List<List<String>> subarvores = new ArrayList<>();
+        BufferNativo vetor = null;
+
+        try {
+            Distribuidor.conectar(args[0].split(","), 0, 0, conexoes, subarvores);
+            if (conexoes.isEmpty()) {
+                System.err.println("[ERRO FATAL] Nenhuma conexão estabelecida. Encerrando.");
+                return;
+            }
+
+            int tamanho = Integer.parseInt(args[1]);
+            String consulta = args[2].toLowerCase(Locale.ROOT);
+            vetor = ExecucaoLote.gerarVetor(tamanho, "aleatoria", System.nanoTime());
+            long[] contagemLocal = SelecaoParcial.contar(vetor);
+
+            long inicio = System.currentTimeMillis();
+            switch (consulta) {
+                case "menores":
+                case "maiores": {
+                    int k = Integer.parseInt(args[3]);
+                    boolean maiores = consulta.equals("maiores");
+                    try (BufferNativo resultado = selecionarDistribuido(conexoes, vetor, k, maiores)) {
+                        long tempo = System.currentTimeMillis() - inicio;
+                        System.out.println("\n[RESULTADO] " + resultado.tamanho() + " " + consulta + " em " + tempo + " ms");
+                        if (resultado.tamanho() <= 200) {
+                            System.out.println(Arrays.toString(resultado.paraVetor()));
+                        }
+
+                        // Confere com a contagem local: o i-ésimo selecionado ocupa uma posição conhecida
+                        long base = maiores ? tamanho - resultado.tamanho() : 0;
+                        boolean correto = true;
+                        for (int i = 0; i < resultado.tamanho(); i++) {
+                            correto &= resultado.get(i) == SelecaoParcial.elementoNaPosicao(contagemLocal, base + i);
+                        }
+                        exibirValidacao(correto);
+                    }
+                    break;
+                }
+                case "kesimo": {
+                    long k = Long.parseLong(args[3]);
+                    byte valor = kEsimoDistribuido(conexoes, vetor, k);
+                    long tempo = System.currentTimeMillis() - inicio;
+                    System.out.println("\n[RESULTADO] " + k + "º menor elemento: " + valor + " (" + tempo + " ms)");
+                    exibirValidacao(valor == SelecaoParcial.elementoNaPosicao(contagemLocal, k - 1));
+                    break;
+                }
+                case "quantis": {
+                    String[] partes = args[3].split(",");
+                    double[] q = new double[partes.length];
+                    for (int i = 0; i < q.length; i++) {
+                        q[i] = Double.parseDouble(partes[i].trim());
+                    }
+                    byte[] valores = quantisDistribuidos(conexoes, vetor, q);
+                    long tempo = System.currentTimeMillis() - inicio;
+                    System.out.println("\n[RESULTADO] Quantis calculados em " + tempo + " ms");
+                    boolean correto = true;
+                    for (int i = 0; i < q.length; i++) {
+                        System.out.println("  q=" + q[i] + " -> " + valores[i]);
+                        correto &= valores[i] == SelecaoParcial.elementoNaPosicao(contagemLocal, posicaoDoQuantil(q[i], tamanho));
+                    }
+                    exibirValidacao(correto);
+                    break;
+                }
+                default:
+                    System.err.println("[ERRO] Consulta desconhecida: " + consulta);
+            }
+
+        } catch (NumberFormatException e) {
+            System.err.println("[ERRO] Parâmetro numérico inválido: " + e.getMessage());
+        } catch (Exception e) {
+            System.err.println("[ERRO] Exceção capturada no main: " + e.getMessage());
+            e.printStackTrace();
+        } finally {
+            Distribuidor.encerrarConexoes(conexoes);
+            if (vetor != null) vetor.liberar();
+        }
+    }
+
+    /**
+     * k menores (ou maiores) valores do vetor, em ordem crescente
+     */
+    static BufferNativo selecionarDistribuido(List<ConexaoR> conexoes, BufferNativo vetor, int k,
+                                              boolean maiores) throws Exception {
+        Comunicado[] resultados = enviarParaTodos(conexoes, vetor, parte ->
+                new PedidoSelecao(parte, Math.min(k, parte.tamanho()), maiores));
+
+        List<BufferNativo> parciais = new ArrayList<>();
+        for (Comunicado c : resultados) {
+            parciais.add(((Resposta) c).getBuffer());
+        }
+        try {
+            return SelecaoParcial.combinar(parciais, k, maiores);
+        } finally {
+            for (BufferNativo parcial : parciais) {
+                parcial.liberar();
+            }
+        }
+    }
+
+    /**
+     * Contagem de cada valor no vetor inteiro (soma das contagens de cada Receptor)
+     */
+    static long[] contarDistribuido(List<ConexaoR> conexoes, BufferNativo vetor) throws Exception {
+        Comunicado[] resultados = enviarParaTodos(conexoes, vetor, PedidoContagem::new);
+        List<long[]> parciais = new ArrayList<>();
+        for (Comunicado c : resultados) {
+            parciais.add(((RespostaContagem) c).getContagem());
+        }
+        return SelecaoParcial.somar(parciais);
+    }
+
+    /**
+     * k-ésimo menor elemento (k a partir de 1)
+     */
+    static byte kEsimoDistribuido(List<ConexaoR> conexoes, BufferNativo vetor, long k) throws Exception {
+        if (k < 1 || k > vetor.tamanho()) {
+            throw new IllegalArgumentException("k deve estar entre 1 e " + vetor.tamanho());
+        }
+        return SelecaoParcial.elementoNaPosicao(contarDistribuido(conexoes, vetor), k - 1);
+    }
+
+    /**
+     * Quantis do vetor (q entre 0 e 1), todos a partir de uma única rodada de contagem
+     */
+    static byte[] quantisDistribuidos(List<ConexaoR> conexoes, BufferNativo vetor, double[] q) throws Exception {
+        long[] contagem = contarDistribuido(conexoes, vetor);
+        byte[] valores = new byte[q.length];
+        for (int i = 0; i < q.length; i++) {
+            valores[i] = SelecaoParcial.elementoNaPosicao(contagem, posicaoDoQuantil(q[i], vetor.tamanho()));
+        }
+        return valores;
+    }
+
+    /**
+     * Posição (a partir de 0) do quantil q no vetor ordenado: arredonda (n - 1) * q para baixo
+     */
+    static long posicaoDoQuantil(double q, long tamanho) {
+        if (q < 0 || q > 1) {
+            throw new IllegalArgumentException("Quantil fora de [0, 1]: " + q);
+        }
+        return (long) Math.floor((tamanho - 1) * q);
+    }
+
+    /**
+     * Divide o vetor em partes iguais e envia uma consulta por conexão, em paralelo
+     * @return resultados na mesma ordem das conexões
+     */
+    private static Comunicado[] enviarParaTodos(List<ConexaoR> conexoes, BufferNativo vetor,
+                                                Function<BufferNativo, Pedido> criarConsulta)
+            throws Exception {
+        int[] pesos = new int[conexoes.size()];
+        Arrays.fill(pesos, 1);
+        int[] limites = PedidoHierarquico.dividirProporcional(vetor.tamanho(), pesos);
+
+        Comunicado[] resultados = new Comunicado[conexoes.size()];
+        List<Exception> excecoes = Collections.synchronizedList(new ArrayList<>());
+        List<Thread> threads = new ArrayList<>();
+
+        for (int i = 0; i < conexoes.size(); i++) {
+            final int indice = i;
+            final BufferNativo parte = vetor.fatia(limites[i], limites[i + 1]);
+            Thread thread = new Thread(() -> {
+                ConexaoR c = conexoes.get(indice);
+                try {
+                    resultados[indice] = c.enviarConsulta(criarConsulta.apply(parte));
+                } catch (Exception e) {
+                    System.err.println("[ERRO] Consulta a " + c + " falhou: " + e.getMessage());
+                    excecoes.add(e);
+                }
+            }, "Thread-Consulta-" + i);
+            threads.add(thread);
+            thread.start();
+        }
+
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        if (!excecoes.isEmpty()) {
+            for (Comunicado c : resultados) {
+                if (c instanceof Resposta) {
+                    ((Resposta) c).getBuffer().liberar();
+                }
+            }
+            throw new Exception("Falhas na comunicação com receptores: " + excecoes.size() + " erros");
+        }
+        return resultados;
+    }
+
+    private static void exibirValidacao(boolean correto) {
+        if (correto) {
+            System.out.println("[SUCESSO] Resultado confere com a contagem local!");
+        } else {
+            System.err.println("[ERRO] Resultado NÃO confere com a contagem local!");
+        }
+    }
+}
@@ -0,0 +1,340 @@
+package src.Distribuidor;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.*;
+import java.util.zip.CRC32;
+import src.Comunicacao.*;
+
+/**
+ * Diário em disco de um trabalho de ordenação retomável.
+ *
+ * O diretório do trabalho guarda:
+ *   entrada.bin    - o vetor de entrada (gravado uma única vez, na criação)
+ *   run-NNNNN.bin  - a run ordenada de cada partição concluída
+ *   resultado.bin  - o vetor ordenado, depois da intercalação final
+ *   diario.bin     - registros binários, só acrescentados, cada um com seu CRC32:
+ *                    cabeçalho (tamanhos e CRC da entrada), partição atribuída a um receptor,
+ *                    partição concluída (CRC da run) e trabalho finalizado
+ *
+ * Cada arquivo de run é gravado e sincronizado antes do registro que o declara concluído,
+ * então uma queda em qualquer ponto deixa no máximo um registro incompleto no fim do diário.
+ * Ao reabrir, registros com CRC inválido encerram a leitura (e são descartados) e runs cujo
+ * arquivo falte ou não confira com o CRC registrado voltam a ser pendentes.
+ */
+class DiarioTrabalho implements Closeable {
+
+    private static final int MAGICO = 0x44494152; // "DIAR"
+    private static final int VERSAO = 1;
+
+    private static final byte CABECALHO = 1;
+    private static final byte ATRIBUIDA = 2;
+    private static final byte CONCLUIDA = 3;
+    private static final byte FINALIZADO = 4;
+
+    private final Path diretorio;
+    private final FileChannel canal;
+    private int tamanho;
+    private int tamanhoParticao;
+    private int numParticoes;
+    private long crcEntrada;
+    private final Map<Integer, Long> concluidas = new HashMap<>();
+    private final Map<Integer, String> atribuicoes = new HashMap<>();
+    private boolean finalizado;
+
+    private DiarioTrabalho(Path diretorio, FileChannel canal) {
+        this.diretorio = diretorio;
+        this.canal = canal;
+    }
+
+    static boolean existe(Path diretorio) {
+        return Files.exists(diretorio.resolve("diario.bin"));
+    }
+
+    /**
+     * Cria um trabalho novo: grava a entrada e o cabeçalho do diário
+     */
+    static DiarioTrabalho criar(Path diretorio, BufferNativo entrada, int tamanhoParticao) throws IOException {
+        Files.createDirectories(diretorio);
+        gravarArquivo(diretorio.resolve("entrada.bin"), entrada);
+
+        FileChannel canal = FileChannel.open(diretorio.resolve("diario.bin"), StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+        DiarioTrabalho diario = new DiarioTrabalho(diretorio, canal);
+        diario.tamanho = entrada.tamanho();
+        diario.tamanhoParticao = Math.max(1, tamanhoParticao);
+        diario.numParticoes = (int) ((entrada.tamanho() + (long) diario.tamanhoParticao - 1) / diario.tamanhoParticao);
+        diario.crcEntrada = crc(entrada);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(MAGICO);
+        out.writeInt(VERSAO);
+        out.writeInt(diario.tamanho);
+        out.writeInt(diario.tamanhoParticao);
+        out.writeLong(diario.crcEntrada);
+        diario.acrescentar(CABECALHO, bytes.toByteArray());
+        return diario;
+    }
+
+    /**
+     * Reabre um trabalho existente, reconstruindo o estado a partir dos registros válidos
+     */
+    static DiarioTrabalho abrir(Path diretorio) throws IOException {
+        Path arquivo = diretorio.resolve("diario.bin");
+        FileChannel canal = FileChannel.open(arquivo, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        DiarioTrabalho diario = new DiarioTrabalho(diretorio, canal);
+        try {
+            long validos = diario.reproduzir(Files.readAllBytes(arquivo));
+            if (validos < canal.size()) {
+                System.err.println("[AVISO] Diário com " + (canal.size() - validos) +
+                        " byte(s) inválidos no fim (registro incompleto); descartando");
+                canal.truncate(validos);
+            }
+            canal.position(validos);
+            diario.conferirRuns();
+        } catch (IOException e) {
+            canal.close();
+            throw e;
+        }
+        return diario;
+    }
+
+    private long reproduzir(byte[] conteudo) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(conteudo));
+        long posicao = 0;
+        while (true) {
+            byte tipo;
+            byte[] carga;
+            try {
+                tipo = in.readByte();
+                int tamanhoCarga = in.readInt();
+                if (tamanhoCarga < 0 || tamanhoCarga > in.available()) {
+                    break;
+                }
+                carga = new byte[tamanhoCarga];
+                in.readFully(carga);
+                int crcLido = in.readInt();
+                CRC32 crc = new CRC32();
+                crc.update(tipo);
+                crc.update(carga);
+                if ((int) crc.getValue() != crcLido) {
+                    break;
+                }
+            } catch (EOFException e) {
+                break;
+            }
+
+            DataInputStream registro = new DataInputStream(new ByteArrayInputStream(carga));
+            switch (tipo) {
+                case CABECALHO:
+                    if (registro.readInt() != MAGICO || registro.readInt() != VERSAO) {
+                        throw new IOException("Diário de versão desconhecida: " + diretorio);
+                    }
+                    tamanho = registro.readInt();
+                    tamanhoParticao = registro.readInt();
+                    numParticoes = (int) ((tamanho + (long) tamanhoParticao - 1) / tamanhoParticao);
+                    crcEntrada = registro.readLong();
+                    break;
+                case ATRIBUIDA:
+                    atribuicoes.put(registro.readInt(), registro.readUTF());
+                    break;
+                case CONCLUIDA:
+                    concluidas.put(registro.readInt(), registro.readLong());
+                    break;
+                case FINALIZADO:
+                    finalizado = true;
+                    break;
+                default:
+                    throw new IOException("Registro desconhecido no diário: " + tipo);
+            }
+            posicao += 1 + 4 + carga.length + 4;
+        }
+
+        if (tamanhoParticao == 0) {
+            throw new IOException("Diário sem cabeçalho válido: " + diretorio);
+        }
+        return posicao;
+    }
+
+    /**
+     * Runs sem arquivo ou com conteúdo diferente do registrado voltam a ser pendentes
+     */
+    private void conferirRuns() throws IOException {
+        Iterator<Map.Entry<Integer, Long>> iterador = concluidas.entrySet().iterator();
+        while (iterador.hasNext()) {
+            Map.Entry<Integer, Long> run = iterador.next();
+            Path arquivo = arquivoRun(run.getKey());
+            boolean valida = Files.exists(arquivo) && Files.size(arquivo) == tamanhoDaParticao(run.getKey());
+            if (valida) {
+                try (BufferNativo conteudo = BufferNativo.mapear(arquivo, tamanhoDaParticao(run.getKey()))) {
+                    valida = crc(conteudo) == run.getValue();
+                }
+            }
+            if (!valida) {
+                System.err.println("[AVISO] Run da partição " + run.getKey() + " ausente ou corrompida; " +
+                        "a partição será ordenada de novo");
+                iterador.remove();
+            }
+        }
+    }
+
+    /**
+     * Mapeia a entrada, conferindo o CRC do cabeçalho
+     */
+    BufferNativo carregarEntrada() throws IOException {
+        if (Files.size(diretorio.resolve("entrada.bin")) != tamanho) {
+            throw new IOException("Entrada do trabalho ausente ou truncada: " + diretorio);
+        }
+        BufferNativo entrada = BufferNativo.mapear(diretorio.resolve("entrada.bin"), tamanho);
+        if (crc(entrada) != crcEntrada) {
+            entrada.liberar();
+            throw new IOException("Entrada do trabalho corrompida (CRC não confere): " + diretorio);
+        }
+        return entrada;
+    }
+
+    /**
+     * Registra que a partição foi enviada a um receptor (informativo, para a retomada)
+     */
+    synchronized void registrarAtribuicao(int particao, String receptor) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(particao);
+        out.writeUTF(receptor);
+        acrescentar(ATRIBUIDA, bytes.toByteArray());
+        atribuicoes.put(particao, receptor);
+    }
+
+    /**
+     * Grava a run ordenada de uma partição e só então a registra como concluída
+     */
+    void registrarRun(int particao, BufferNativo run) throws IOException {
+        if (run.tamanho() != tamanhoDaParticao(particao)) {
+            throw new IOException("Run da partição " + particao + " com tamanho " + run.tamanho() +
+                    " (esperado " + tamanhoDaParticao(particao) + ")");
+        }
+        long crcRun = crc(run);
+        gravarArquivo(arquivoRun(particao), run);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(particao);
+        out.writeLong(crcRun);
+        synchronized (this) {
+            acrescentar(CONCLUIDA, bytes.toByteArray());
+            concluidas.put(particao, crcRun);
+        }
+    }
+
+    /**
+     * Mapeia a run de uma partição concluída
+     */
+    BufferNativo carregarRun(int particao) throws IOException {
+        return BufferNativo.mapear(arquivoRun(particao), tamanhoDaParticao(particao));
+    }
+
+    /**
+     * Grava o vetor ordenado e marca o trabalho como finalizado
+     */
+    synchronized void registrarResultado(BufferNativo resultado) throws IOException {
+        gravarArquivo(diretorio.resolve("resultado.bin"), resultado);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        new DataOutputStream(bytes).writeLong(crc(resultado));
+        acrescentar(FINALIZADO, bytes.toByteArray());
+        finalizado = true;
+    }
+
+    synchronized List<Integer> pendentes() {
+        List<Integer> pendentes = new ArrayList<>();
+        for (int p = 0; p < numParticoes; p++) {
+            if (!concluidas.containsKey(p)) {
+                pendentes.add(p);
+            }
+        }
+        return pendentes;
+    }
+
+    /**
+     * Receptor ao qual a partição foi atribuída por último (null se nunca foi)
+     */
+    synchronized String getAtribuicao(int particao) {
+        return atribuicoes.get(particao);
+    }
+
+    int inicioDaParticao(int particao) {
+        return particao * tamanhoParticao;
+    }
+
+    int tamanhoDaParticao(int particao) {
+        return Math.min(tamanho, inicioDaParticao(particao) + tamanhoParticao) - inicioDaParticao(particao);
+    }
+
+    int getTamanho() {
+        return tamanho;
+    }
+
+    int getNumParticoes() {
+        return numParticoes;
+    }
+
+    synchronized boolean isFinalizado() {
+        return finalizado;
+    }
+
+    Path getDiretorio() {
+        return diretorio;
+    }
+
+    @Override
+    public void close() throws IOException {
+        canal.close();
+    }
+
+    /**
+     * Acrescenta um registro (tipo, tamanho da carga, carga, CRC32) e o sincroniza com o disco
+     */
+    private void acrescentar(byte tipo, byte[] carga) throws IOException {
+        CRC32 crc = new CRC32();
+        crc.update(tipo);
+        crc.update(carga);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(carga.length + 9);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(tipo);
+        out.writeInt(carga.length);
+        out.write(carga);
+        out.writeInt((int) crc.getValue());
+
+        ByteBuffer registro = ByteBuffer.wrap(bytes.toByteArray());
+        while (registro.hasRemaining()) {
+            canal.write(registro);
+        }
+        canal.force(false);
+    }
+
+    private Path arquivoRun(int particao) {
+        return diretorio.resolve(String.format("run-%05d.bin", particao));
+    }
+
+    /**
+     * Grava o buffer em um arquivo temporário, sincroniza e o move para o nome final
+     */
+    private static void gravarArquivo(Path arquivo, BufferNativo conteudo) throws IOException {
+        Path temporario = arquivo.resolveSibling(arquivo.getFileName() + ".tmp");
+        try (FileChannel saida = FileChannel.open(temporario, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            conteudo.escreverEm(saida);
+            saida.force(true);
+        }
+        Files.move(temporario, arquivo, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static long crc(BufferNativo buffer) {
+        CRC32 crc = new CRC32();
+        crc.update(buffer.getByteBuffer());
+        return crc.getValue();
+    }
+}
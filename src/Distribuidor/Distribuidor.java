@@ -2,84 +2,21 @@ package src.Distribuidor;
 
 import java.io.*;
 import java.net.*;
+import java.nio.ByteBuffer;
 import java.security.SecureRandom;
 import java.util.*;
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantLock;
 import src.Comunicacao.*;
 
 public class Distribuidor {
 
     private static final int NUM_PROCESSADORES = Runtime.getRuntime().availableProcessors();
 
-    static class ConexaoR {
-        String host;
-        int porta;
-        Socket socket;
-        ObjectOutputStream out;
-        ObjectInputStream in;
-        private final Lock mutex = new ReentrantLock();
-
-        public ConexaoR(String host, int porta) throws IOException {
-            this.host = host;
-            this.porta = porta;
-            this.socket = new Socket(host, porta);
-            this.socket.setTcpNoDelay(true);
-            this.out = new ObjectOutputStream(socket.getOutputStream());
-            this.out.flush();
-            this.in = new ObjectInputStream(socket.getInputStream());
-            System.out.println("[LOG] Conectado a " + host + ":" + porta);
-        }
-
-        public Resposta enviarPedido(Pedido pedido) throws IOException, ClassNotFoundException {
-            mutex.lock();
-            try {
-                out.writeObject(pedido);
-                out.flush();
-                System.out.println("[LOG] Pedido enviado para " + this);
-
-                Object obj = in.readObject();
-                if (obj instanceof Resposta) {
-                    System.out.println("[LOG] Resposta recebida de " + this);
-                    return (Resposta) obj;
-                }
-                throw new IOException("Resposta inválida recebida de " + this);
-            } finally {
-                mutex.unlock();
-            }
-        }
-
-        public void enviarEncerramento() throws IOException {
-            mutex.lock();
-            try {
-                System.out.println("[LOG] Enviando encerramento para " + this);
-                out.writeObject(new ComunicadoEncerramento());
-                out.flush();
-            } finally {
-                mutex.unlock();
-            }
-        }
-
-        public void fechar() {
-            try {
-                if (socket != null && !socket.isClosed()) {
-                    socket.close();
-                    System.out.println("[LOG] Conexão fechada com " + this);
-                }
-            } catch (IOException e) {
-                System.err.println("[ERRO] Ao fechar conexão com " + this + ": " + e.getMessage());
-            }
-        }
-
-        @Override
-        public String toString() {
-            return host + ":" + porta;
-        }
-    }
-
     public static void main(String[] args) {
         Scanner scanner = new Scanner(System.in);
         List<ConexaoR> conexoes = new ArrayList<>();
+        List<List<String>> subarvores = new ArrayList<>();
+        BufferNativo vetor = null;
+        BufferNativo vetorOrdenado = null;
 
         try {
             System.out.println("=== INICIANDO DISTRIBUIDOR ===");
@@ -91,26 +28,26 @@ public class Distribuidor {
                     "localhost:12346"
             };
 
-            // Criação das conexões persistentes
-            System.out.println("\n[LOG] Estabelecendo conexões com os receptores...");
-            for (String s : servidores) {
-                try {
-                    String[] partes = s.split(":");
-                    ConexaoR conexao = new ConexaoR(partes[0], Integer.parseInt(partes[1]));
-                    conexoes.add(conexao);
-                } catch (IOException e) {
-                    System.err.println("[ERRO] Não foi possível conectar a " + s + ": " + e.getMessage());
-                    System.err.println("[AVISO] Verifique se o servidor está rodando nesta porta!");
-                }
+            // Topologia em árvore (opcional): grau (fan-out) e profundidade máxima via argumentos.
+            // Sem argumentos o Distribuidor conecta-se a todos os receptores (topologia plana).
+            int grau = args.length > 0 ? Integer.parseInt(args[0]) : 0;
+            int profundidade = args.length > 1 ? Integer.parseInt(args[1]) : 0;
+            // Terceiro argumento (opcional): limite de memória em MB para a ordenação (0 = sem limite)
+            long orcamentoMb = args.length > 2 ? Long.parseLong(args[2]) : 0;
+            // Quarto argumento (opcional): "pares" para os receptores intercalarem entre si
+            boolean intercalarEntrePares = args.length > 3 && args[3].equalsIgnoreCase("pares");
+            if (orcamentoMb > 0 && intercalarEntrePares) {
+                System.err.println("[ERRO] Orçamento de memória e \"pares\" não podem ser usados juntos " +
+                        "(a ordenação com orçamento intercala no Distribuidor). Encerrando.");
+                return;
             }
+            grau = conectar(servidores, grau, profundidade, conexoes, subarvores);
 
             if (conexoes.isEmpty()) {
                 System.err.println("[ERRO FATAL] Nenhuma conexão estabelecida. Encerrando.");
                 return;
             }
 
-            System.out.println("[LOG] Total de conexões estabelecidas: " + conexoes.size() + "/" + servidores.length);
-
             // Solicitar tamanho do vetor
             System.out.print("\nDigite o tamanho do vetor (ex: 1000, 10000, 100000): ");
             int TAM = scanner.nextInt();
@@ -122,10 +59,8 @@ public class Distribuidor {
 
             System.out.println("[LOG] Gerando vetor de " + TAM + " elementos...");
 
-            // Geração do vetor principal
-            SecureRandom rnd = new SecureRandom();
-            byte[] vetor = new byte[TAM];
-            rnd.nextBytes(vetor); // Mais eficiente para preencher com bytes aleatórios
+            // Geração do vetor principal (fora do heap)
+            vetor = gerarVetor(TAM);
 
             System.out.println("[LOG] Vetor gerado com sucesso!");
 
@@ -139,7 +74,13 @@ public class Distribuidor {
             // Ordenação distribuída principal
             System.out.println("\n[LOG] Iniciando ordenação distribuída...");
             long inicio = System.currentTimeMillis();
-            byte[] vetorOrdenado = ordenarDistribuido(conexoes, vetor);
+            if (orcamentoMb > 0) {
+                vetorOrdenado = OrdenacaoOrcada.ordenar(conexoes, subarvores, grau, vetor, orcamentoMb << 20);
+            } else if (intercalarEntrePares) {
+                vetorOrdenado = ordenarEntrePares(conexoes, subarvores, vetor);
+            } else {
+                vetorOrdenado = ordenarDistribuido(conexoes, subarvores, grau, vetor);
+            }
             long fim = System.currentTimeMillis();
             long tempoDistribuido = fim - inicio;
             
@@ -185,53 +126,133 @@ public class Distribuidor {
             e.printStackTrace();
         } finally {
             // Envio do ComunicadoEncerramento e fechamento de conexões
-            System.out.println("\n[LOG] Encerrando conexões...");
-            for (ConexaoR c : conexoes) {
+            encerrarConexoes(conexoes);
+
+            // Devolve a memória fora do heap
+            if (vetor != null) vetor.liberar();
+            if (vetorOrdenado != null) vetorOrdenado.liberar();
+
+            scanner.close();
+            System.out.println("\n=== FIM DO DISTRIBUIDOR ===");
+        }
+    }
+
+    /**
+     * Estabelece as conexões persistentes (uma por raiz de subárvore)
+     * @param servidores - endereços "host:porta" de todos os receptores
+     * @param grau - fan-out da árvore (0 = topologia plana)
+     * @param profundidade - profundidade máxima da árvore (0 = sem limite)
+     * @param conexoes - recebe as conexões estabelecidas
+     * @param subarvores - recebe a subárvore de cada conexão (mesma ordem)
+     * @return grau efetivamente usado
+     */
+    static int conectar(String[] servidores, int grau, int profundidade,
+                        List<ConexaoR> conexoes, List<List<String>> subarvores) {
+        if (profundidade > 0) {
+            grau = Math.max(grau, PedidoHierarquico.grauParaProfundidade(servidores.length, profundidade));
+        }
+
+        List<List<String>> grupos = PedidoHierarquico.dividirEmSubarvores(Arrays.asList(servidores), grau);
+        if (grau > 0) {
+            System.out.println("[LOG] Topologia em árvore: grau " + grau + ", " + grupos.size() +
+                    " receptor(es) ligados diretamente ao Distribuidor");
+        }
+
+        System.out.println("\n[LOG] Estabelecendo conexões com os receptores...");
+        for (List<String> grupo : grupos) {
+            // Se a raiz do grupo não responder, o próximo nó do grupo assume seu lugar
+            for (int i = 0; i < grupo.size(); i++) {
+                String s = grupo.get(i);
                 try {
-                    c.enviarEncerramento();
-                    c.fechar();
+                    String[] partes = s.split(":");
+                    ConexaoR conexao = new ConexaoR(partes[0], Integer.parseInt(partes[1]));
+                    conexoes.add(conexao);
+                    subarvores.add(grupo.subList(i + 1, grupo.size()));
+                    break;
                 } catch (IOException e) {
-                    System.err.println("[ERRO] Ao enviar encerramento para " + c + ": " + e.getMessage());
+                    System.err.println("[ERRO] Não foi possível conectar a " + s + ": " + e.getMessage());
+                    System.err.println("[AVISO] Verifique se o servidor está rodando nesta porta!");
                 }
             }
+        }
 
-            scanner.close();
-            System.out.println("\n=== FIM DO DISTRIBUIDOR ===");
+        System.out.println("[LOG] Total de conexões estabelecidas: " + conexoes.size() + "/" + grupos.size());
+        return grau;
+    }
+
+    /**
+     * Envia ComunicadoEncerramento e fecha todas as conexões
+     */
+    static void encerrarConexoes(List<ConexaoR> conexoes) {
+        System.out.println("\n[LOG] Encerrando conexões...");
+        for (ConexaoR c : conexoes) {
+            try {
+                c.enviarEncerramento();
+                c.fechar();
+            } catch (IOException e) {
+                System.err.println("[ERRO] Ao enviar encerramento para " + c + ": " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Gera um vetor aleatório fora do heap, preenchendo-o em blocos
+     */
+    private static BufferNativo gerarVetor(int tamanho) {
+        SecureRandom rnd = new SecureRandom();
+        BufferNativo vetor = BufferNativo.alocar(tamanho);
+        ByteBuffer destino = vetor.getByteBuffer();
+        byte[] bloco = new byte[Math.min(BufferNativo.TAMANHO_BLOCO, tamanho)];
+        while (destino.hasRemaining()) {
+            int n = Math.min(bloco.length, destino.remaining());
+            rnd.nextBytes(bloco); // Mais eficiente para preencher com bytes aleatórios
+            destino.put(bloco, 0, n);
         }
+        return vetor;
     }
 
     /**
-     * Realiza a ordenação distribuída enviando pedidos em paralelo
+     * Realiza a ordenação distribuída enviando pedidos em paralelo.
+     * Cada conexão recebe uma parte proporcional ao número de receptores da sua subárvore.
      */
-    private static byte[] ordenarDistribuido(List<ConexaoR> conexoes, byte[] vetor) throws Exception {
+    static BufferNativo ordenarDistribuido(List<ConexaoR> conexoes, List<List<String>> subarvores,
+                                           int grau, BufferNativo vetor) throws Exception {
         List<Thread> threads = new ArrayList<>();
         List<Resposta> respostas = Collections.synchronizedList(new ArrayList<>());
         List<Exception> excecoes = Collections.synchronizedList(new ArrayList<>());
 
-        int tamanhoParte = vetor.length / conexoes.size();
-        int resto = vetor.length % conexoes.size();
+        int[] pesos = new int[conexoes.size()];
+        for (int i = 0; i < pesos.length; i++) {
+            pesos[i] = 1 + subarvores.get(i).size();
+        }
+        int[] limites = PedidoHierarquico.dividirProporcional(vetor.tamanho(), pesos);
 
         System.out.println("[LOG] Dividindo vetor em " + conexoes.size() + " partes...");
 
         // Cria threads para enviar pedidos aos receptores
         for (int i = 0; i < conexoes.size(); i++) {
-            final int inicio = i * tamanhoParte;
-            final int fim = inicio + tamanhoParte + (i == conexoes.size() - 1 ? resto : 0);
-            final byte[] subVetor = Arrays.copyOfRange(vetor, inicio, fim);
+            final int inicio = limites[i];
+            final int fim = limites[i + 1];
+            final List<String> subarvore = subarvores.get(i);
+            // Fatia do vetor original: nenhuma cópia antes da serialização
+            final BufferNativo subVetor = vetor.fatia(inicio, fim);
 
             final int indice = i;
             Thread thread = new Thread(() -> {
                 try {
                     ConexaoR c = conexoes.get(indice);
                     System.out.println("[LOG] Thread-" + indice + " enviando para " + c +
-                            " (tam=" + subVetor.length + ")");
+                            " (tam=" + subVetor.tamanho() + ")");
 
-                    Pedido pedido = new Pedido(subVetor);
+                    // Receptores com subárvore recebem um pedido hierárquico e repassam aos filhos
+                    Pedido pedido = subarvore.isEmpty()
+                            ? new Pedido(subVetor)
+                            : new PedidoHierarquico(subVetor, subarvore, grau);
                     Resposta r = c.enviarPedido(pedido);
 
                     respostas.add(r);
                     System.out.println("[LOG] Thread-" + indice + " recebeu resposta de " + c +
-                            " (vetor ordenado de tamanho " + r.getVetor().length + ")");
+                            " (vetor ordenado de tamanho " + r.getBuffer().tamanho() + ")");
                 } catch (Exception e) {
                     System.err.println("[ERRO] Thread-" + indice + " falhou ao comunicar com " +
                             conexoes.get(indice) + ": " + e.getMessage());
@@ -258,151 +279,48 @@ public class Distribuidor {
 
         // Verificar se houve exceções
         if (!excecoes.isEmpty()) {
+            for (Resposta r : respostas) {
+                r.getBuffer().liberar();
+            }
             System.err.println("[AVISO] " + excecoes.size() + " thread(s) falharam durante a execução");
             throw new Exception("Falhas na comunicação com receptores: " + excecoes.size() + " erros");
         }
 
         // Extrai vetores ordenados das respostas
         System.out.println("[LOG] Extraindo vetores ordenados das respostas...");
-        byte[][] vetoresOrdenados = new byte[respostas.size()][];
-        for (int i = 0; i < respostas.size(); i++) {
-            vetoresOrdenados[i] = respostas.get(i).getVetor();
+        List<BufferNativo> vetoresOrdenados = new ArrayList<>();
+        for (Resposta r : respostas) {
+            vetoresOrdenados.add(r.getBuffer());
         }
 
         // Faz merge dos vetores ordenados usando threads
         System.out.println("[LOG] Iniciando merge dos vetores ordenados...");
-        byte[] resultado = mergeComThreads(vetoresOrdenados);
+        BufferNativo resultado = IntercalacaoParalela.mergeComThreads(vetoresOrdenados);
         
         return resultado;
     }
 
     /**
-     * Faz merge de múltiplos vetores ordenados usando threads juntadoras
-     */
-    private static byte[] mergeComThreads(byte[][] vetores) throws InterruptedException {
-        List<byte[]> lista = new ArrayList<>(Arrays.asList(vetores));
-        int rodada = 1;
-
-        // Enquanto houver mais de um vetor, continua fazendo merge 2 a 2
-        while (lista.size() > 1) {
-            System.out.println("[LOG] Rodada de merge #" + rodada + " - " + lista.size() + " vetores");
-            
-            List<byte[]> novaLista = new ArrayList<>();
-            int numPares = lista.size() / 2;
-            int numThreads = Math.min(NUM_PROCESSADORES, numPares);
-            
-            // Se temos pares suficientes, usa threads para merge paralelo
-            if (numPares > 0 && numThreads > 0) {
-                // Calcula quantos pares cada thread vai processar
-                int paresPorThread = Math.max(1, numPares / numThreads);
-                List<ThreadJuntadora> threadsJuntadoras = new ArrayList<>();
-                
-                int parInicial = 0;
-                for (int t = 0; t < numThreads && parInicial < numPares; t++) {
-                    int inicioPar = parInicial * 2;
-                    int numParesThread = Math.min(paresPorThread, numPares - parInicial);
-                    int fimPar = inicioPar + numParesThread * 2;
-                    
-                    List<byte[]> subLista = lista.subList(inicioPar, fimPar);
-                    ThreadJuntadora tj = new ThreadJuntadora(subLista, t);
-                    tj.start();
-                    threadsJuntadoras.add(tj);
-                    
-                    System.out.println("[LOG] Thread juntadora " + t + " iniciada para processar " 
-                            + numParesThread + " par(es)");
-                    
-                    parInicial += numParesThread;
-                }
-                
-                // Aguarda threads juntadoras
-                for (ThreadJuntadora tj : threadsJuntadoras) {
-                    tj.join();
-                    novaLista.addAll(tj.getResultados());
-                    System.out.println("[LOG] Thread juntadora " + tj.id + " finalizou");
-                }
-            }
-            
-            // Se sobrou um vetor ímpar, adiciona-o
-            if (lista.size() % 2 == 1) {
-                novaLista.add(lista.get(lista.size() - 1));
-                System.out.println("[LOG] Vetor ímpar adicionado para próxima rodada");
-            }
-            
-            lista = novaLista;
-            rodada++;
-        }
-
-        return lista.get(0);
-    }
-
-    /**
-     * Thread que faz merge de pares de vetores ordenados
+     * Ordenação distribuída com a intercalação feita pelos próprios receptores (topologia plana)
      */
-    private static class ThreadJuntadora extends Thread {
-        private final List<byte[]> vetores;
-        private final int id;
-        private final List<byte[]> resultados;
-
-        public ThreadJuntadora(List<byte[]> vetores, int id) {
-            super("Thread-Juntadora-" + id);
-            this.vetores = vetores;
-            this.id = id;
-            this.resultados = new ArrayList<>();
-        }
-
-        @Override
-        public void run() {
-            // Processa pares de vetores
-            for (int i = 0; i < vetores.size() - 1; i += 2) {
-                byte[] merged = merge(vetores.get(i), vetores.get(i + 1));
-                resultados.add(merged);
-            }
-            
-            // Se sobrou um vetor ímpar nesta sublista
-            if (vetores.size() % 2 == 1) {
-                resultados.add(vetores.get(vetores.size() - 1));
-            }
-        }
-
-        public List<byte[]> getResultados() {
-            return resultados;
-        }
-
-        /**
-         * Faz o merge (intercalação) de dois vetores ordenados
-         */
-        private byte[] merge(byte[] esquerda, byte[] direita) {
-            byte[] resultado = new byte[esquerda.length + direita.length];
-            int i = 0, j = 0, k = 0;
-
-            while (i < esquerda.length && j < direita.length) {
-                if (esquerda[i] <= direita[j]) {
-                    resultado[k++] = esquerda[i++];
-                } else {
-                    resultado[k++] = direita[j++];
-                }
-            }
-
-            while (i < esquerda.length) {
-                resultado[k++] = esquerda[i++];
+    static BufferNativo ordenarEntrePares(List<ConexaoR> conexoes, List<List<String>> subarvores,
+                                          BufferNativo vetor) throws Exception {
+        for (List<String> subarvore : subarvores) {
+            if (!subarvore.isEmpty()) {
+                throw new IllegalArgumentException("A intercalação entre pares exige topologia plana (grau 0)");
             }
-
-            while (j < direita.length) {
-                resultado[k++] = direita[j++];
-            }
-
-            return resultado;
         }
+        return IntercalacaoEntrePares.ordenar(conexoes, vetor);
     }
 
     /**
      * Verifica se um vetor está ordenado corretamente
      */
-    private static boolean verificarOrdenacao(byte[] vetor) {
-        for (int i = 0; i < vetor.length - 1; i++) {
-            if (vetor[i] > vetor[i + 1]) {
+    static boolean verificarOrdenacao(BufferNativo vetor) {
+        for (int i = 0; i < vetor.tamanho() - 1; i++) {
+            if (vetor.get(i) > vetor.get(i + 1)) {
                 System.err.println("[ERRO] Falha na ordenação no índice " + i + 
-                        ": " + vetor[i] + " > " + vetor[i + 1]);
+                        ": " + vetor.get(i) + " > " + vetor.get(i + 1));
                 return false;
     }
         }
@@ -412,11 +330,11 @@ public class Distribuidor {
     /**
      * Exibe um vetor na tela (útil para depuração com vetores pequenos)
      */
-    private static void exibirVetor(byte[] vetor, String titulo) {
+    private static void exibirVetor(BufferNativo vetor, String titulo) {
         System.out.println("\n[" + titulo + "]");
-        for (int i = 0; i < vetor.length; i++) {
-            System.out.print(vetor[i]);
-            if (i < vetor.length - 1) System.out.print(", ");
+        for (int i = 0; i < vetor.tamanho(); i++) {
+            System.out.print(vetor.get(i));
+            if (i < vetor.tamanho() - 1) System.out.print(", ");
             if ((i + 1) % 20 == 0) System.out.println();
         }
         System.out.println("\n");
@@ -425,11 +343,11 @@ public class Distribuidor {
     /**
      * Salva o vetor ordenado em um arquivo de texto
      */
-    private static void salvarVetorEmArquivo(byte[] vetor, String nomeArquivo) {
-        try (PrintWriter writer = new PrintWriter(new FileWriter(nomeArquivo))) {
-            for (int i = 0; i < vetor.length; i++) {
-                writer.print(vetor[i]);
-                if (i < vetor.length - 1) {
+    private static void salvarVetorEmArquivo(BufferNativo vetor, String nomeArquivo) {
+        try (PrintWriter writer = new PrintWriter(new BufferedWriter(new FileWriter(nomeArquivo)))) {
+            for (int i = 0; i < vetor.tamanho(); i++) {
+                writer.print(vetor.get(i));
+                if (i < vetor.tamanho() - 1) {
                     writer.print(", ");
                 }
                 if ((i + 1) % 20 == 0) {
@@ -0,0 +1,408 @@
+package src.Distribuidor;
+
+import java.io.*;
+import java.net.ServerSocket;
+import java.nio.ByteBuffer;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import src.Comunicacao.*;
+import src.Receptor.Receptor;
+
+/**
+ * Execução em lote (sem perguntas no terminal) e gerador de carga de ponta a ponta.
+ *
+ * Para cada combinação de tamanho e distribuição, gera um vetor com semente fixa,
+ * faz algumas ordenações de aquecimento e depois mede "repeticoes" ordenações
+ * distribuídas, com até "concorrencia" ordenações em andamento ao mesmo tempo.
+ * O relatório (CSV ou JSON) traz vazão e latências p50/p95/p99.
+ *
+ * Opções (em linha de comando como --chave=valor ou --chave valor,
+ * ou em um arquivo .properties indicado por --config):
+ *   receptores     lista "host:porta,host:porta" de receptores já em execução
+ *   locais         número de receptores iniciados dentro desta JVM (loopback)
+ *   tamanhos       lista de tamanhos de vetor (padrão 100000)
+ *   distribuicoes  aleatoria, ordenada, invertida, quase-ordenada, poucos-valores (padrão aleatoria)
+ *   repeticoes     ordenações medidas por cenário (padrão 10)
+ *   aquecimento    ordenações descartadas antes da medição (padrão 3)
+ *   concorrencia   ordenações simultâneas (padrão 1)
+ *   grau, profundidade   topologia em árvore (padrão 0 = plana)
+ *   semente        semente dos vetores gerados (padrão 42)
+ *   validar        verifica se cada resultado está ordenado (padrão true)
+ *   orcamento      limite de memória por ordenação em MB (padrão 0 = sem limite)
+ *   pares          receptores intercalam entre si e só a run final volta (padrão false; topologia plana)
+ *   cache          usa o cache de resultados dos receptores (padrão false, para medir a ordenação)
+ *   formato        csv ou json (padrão csv)
+ *   saida          arquivo do relatório (padrão: saída padrão)
+ *   logs           mantém os logs [LOG] dos programas (padrão false)
+ *
+ * Exemplo:
+ *   java -cp . src.Distribuidor.ExecucaoLote --locais 4 --tamanhos 100000,1000000 --repeticoes 20
+ */
+public class ExecucaoLote {
+
+    private static final List<String> DISTRIBUICOES =
+            Arrays.asList("aleatoria", "ordenada", "invertida", "quase-ordenada", "poucos-valores");
+
+    /**
+     * Parâmetros da execução em lote
+     */
+    static class Configuracao {
+        List<String> receptores = new ArrayList<>();
+        int locais = 0;
+        List<Integer> tamanhos = Collections.singletonList(100000);
+        List<String> distribuicoes = Collections.singletonList("aleatoria");
+        int repeticoes = 10;
+        int aquecimento = 3;
+        int concorrencia = 1;
+        int grau = 0;
+        int profundidade = 0;
+        long semente = 42;
+        boolean validar = true;
+        boolean cache = false;
+        long orcamentoMb = 0;
+        boolean pares = false;
+        String formato = "csv";
+        String saida = null;
+        boolean logs = false;
+
+        /**
+         * Lê as opções: primeiro o arquivo de --config (se houver), depois a linha de comando
+         */
+        static Configuracao ler(String[] args) throws IOException {
+            Map<String, String> opcoes = new LinkedHashMap<>();
+            for (int i = 0; i < args.length; i++) {
+                String arg = args[i];
+                if (!arg.startsWith("--")) {
+                    throw new IllegalArgumentException("Argumento inesperado: " + arg);
+                }
+                String chave = arg.substring(2);
+                String valor;
+                int igual = chave.indexOf('=');
+                if (igual >= 0) {
+                    valor = chave.substring(igual + 1);
+                    chave = chave.substring(0, igual);
+                } else if (i + 1 < args.length && !args[i + 1].startsWith("--")) {
+                    valor = args[++i];
+                } else {
+                    valor = "true";
+                }
+                opcoes.put(chave, valor);
+            }
+
+            Configuracao cfg = new Configuracao();
+            if (opcoes.containsKey("config")) {
+                Properties arquivo = new Properties();
+                try (Reader leitor = new FileReader(opcoes.remove("config"))) {
+                    arquivo.load(leitor);
+                }
+                for (String chave : arquivo.stringPropertyNames()) {
+                    cfg.aplicar(chave, arquivo.getProperty(chave).trim());
+                }
+            }
+            for (Map.Entry<String, String> opcao : opcoes.entrySet()) {
+                cfg.aplicar(opcao.getKey(), opcao.getValue());
+            }
+
+            if (cfg.receptores.isEmpty() && cfg.locais == 0) {
+                cfg.locais = 2;
+            }
+            for (String d : cfg.distribuicoes) {
+                if (!DISTRIBUICOES.contains(d)) {
+                    throw new IllegalArgumentException("Distribuição desconhecida: " + d);
+                }
+            }
+            if (cfg.orcamentoMb > 0 && cfg.pares) {
+                throw new IllegalArgumentException("orcamento e pares não podem ser usados juntos " +
+                        "(a ordenação com orçamento intercala no Distribuidor)");
+            }
+            if (cfg.repeticoes <= 0 || cfg.concorrencia <= 0) {
+                throw new IllegalArgumentException("repeticoes e concorrencia devem ser positivos");
+            }
+            return cfg;
+        }
+
+        private void aplicar(String chave, String valor) {
+            switch (chave) {
+                case "receptores": receptores = lista(valor); break;
+                case "locais": locais = Integer.parseInt(valor); break;
+                case "tamanhos":
+                    tamanhos = new ArrayList<>();
+                    for (String t : lista(valor)) {
+                        tamanhos.add(Integer.parseInt(t));
+                    }
+                    break;
+                case "distribuicoes": distribuicoes = lista(valor); break;
+                case "repeticoes": repeticoes = Integer.parseInt(valor); break;
+                case "aquecimento": aquecimento = Integer.parseInt(valor); break;
+                case "concorrencia": concorrencia = Integer.parseInt(valor); break;
+                case "grau": grau = Integer.parseInt(valor); break;
+                case "profundidade": profundidade = Integer.parseInt(valor); break;
+                case "semente": semente = Long.parseLong(valor); break;
+                case "validar": validar = Boolean.parseBoolean(valor); break;
+                case "cache": cache = Boolean.parseBoolean(valor); break;
+                case "orcamento": orcamentoMb = Long.parseLong(valor); break;
+                case "pares": pares = Boolean.parseBoolean(valor); break;
+                case "formato": formato = valor.toLowerCase(Locale.ROOT); break;
+                case "saida": saida = valor; break;
+                case "logs": logs = Boolean.parseBoolean(valor); break;
+                default: throw new IllegalArgumentException("Opção desconhecida: " + chave);
+            }
+        }
+
+        private static List<String> lista(String valor) {
+            List<String> itens = new ArrayList<>();
+            for (String item : valor.split(",")) {
+                if (!item.trim().isEmpty()) {
+                    itens.add(item.trim());
+                }
+            }
+            return itens;
+        }
+    }
+
+    /**
+     * Medições de um cenário (tamanho + distribuição)
+     */
+    static class ResultadoCenario {
+        int tamanho;
+        String distribuicao;
+        int receptores;
+        int concorrencia;
+        int repeticoes;
+        int falhas;
+        double vazaoJobs;
+        double vazaoElementos;
+        double mediaMs;
+        double p50Ms;
+        double p95Ms;
+        double p99Ms;
+        double maxMs;
+    }
+
+    public static void main(String[] args) {
+        PrintStream saidaPadrao = System.out;
+        List<ServerSocket> receptoresLocais = new ArrayList<>();
+        List<ConexaoR> conexoes = new ArrayList<>();
+        List<List<String>> subarvores = new ArrayList<>();
+
+        try {
+            Configuracao cfg = Configuracao.ler(args);
+
+            // Sem --logs, os logs dos programas não se misturam ao relatório
+            // (a saída padrão não é restaurada: threads dos receptores locais ainda podem registrar logs)
+            if (!cfg.logs) {
+                System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+            }
+
+            List<String> servidores = new ArrayList<>(cfg.receptores);
+            for (int i = 0; i < cfg.locais; i++) {
+                ServerSocket local = Receptor.iniciarLocal(0);
+                receptoresLocais.add(local);
+                servidores.add("127.0.0.1:" + local.getLocalPort());
+            }
+
+            int grau = Distribuidor.conectar(servidores.toArray(new String[0]), cfg.grau, cfg.profundidade,
+                    conexoes, subarvores);
+            if (conexoes.isEmpty()) {
+                System.err.println("[ERRO FATAL] Nenhuma conexão estabelecida. Encerrando.");
+                return;
+            }
+            for (ConexaoR conexao : conexoes) {
+                conexao.setUsarCache(cfg.cache);
+            }
+
+            List<ResultadoCenario> resultados = new ArrayList<>();
+            for (int tamanho : cfg.tamanhos) {
+                for (String distribuicao : cfg.distribuicoes) {
+                    System.err.println("[LOG] Cenário: " + tamanho + " elementos, " + distribuicao);
+                    ResultadoCenario r = executarCenario(cfg, conexoes, subarvores, grau, tamanho, distribuicao);
+                    r.receptores = servidores.size();
+                    resultados.add(r);
+                }
+            }
+
+            if (cfg.saida != null) {
+                try (PrintStream arquivo = new PrintStream(new FileOutputStream(cfg.saida), true, "UTF-8")) {
+                    escreverRelatorio(resultados, cfg.formato, arquivo);
+                }
+                System.err.println("[LOG] Relatório salvo em: " + cfg.saida);
+            } else {
+                escreverRelatorio(resultados, cfg.formato, saidaPadrao);
+            }
+
+        } catch (IllegalArgumentException e) {
+            System.err.println("[ERRO] " + e.getMessage());
+        } catch (Exception e) {
+            System.err.println("[ERRO] Exceção capturada na execução em lote: " + e.getMessage());
+            e.printStackTrace();
+        } finally {
+            Distribuidor.encerrarConexoes(conexoes);
+            for (ServerSocket local : receptoresLocais) {
+                try {
+                    local.close();
+                } catch (IOException e) {
+                    System.err.println("[ERRO] Ao fechar receptor local: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * Executa o aquecimento e as repetições medidas de um cenário
+     */
+    private static ResultadoCenario executarCenario(Configuracao cfg, List<ConexaoR> conexoes,
+                                                    List<List<String>> subarvores, int grau,
+                                                    int tamanho, String distribuicao) throws Exception {
+        ResultadoCenario resultado = new ResultadoCenario();
+        resultado.tamanho = tamanho;
+        resultado.distribuicao = distribuicao;
+        resultado.concorrencia = cfg.concorrencia;
+        resultado.repeticoes = cfg.repeticoes;
+
+        // O vetor de entrada só é lido, então todas as repetições compartilham o mesmo
+        try (BufferNativo vetor = gerarVetor(tamanho, distribuicao, cfg.semente)) {
+
+            // Aquecimento (JIT, conexões, buffers): resultados descartados
+            for (int i = 0; i < cfg.aquecimento; i++) {
+                ordenar(cfg, conexoes, subarvores, grau, vetor).liberar();
+            }
+
+            long[] latencias = new long[cfg.repeticoes];
+            AtomicInteger proximo = new AtomicInteger();
+            AtomicInteger falhas = new AtomicInteger();
+            List<Thread> threads = new ArrayList<>();
+
+            long inicio = System.nanoTime();
+            for (int t = 0; t < cfg.concorrencia; t++) {
+                Thread thread = new Thread(() -> {
+                    int i;
+                    while ((i = proximo.getAndIncrement()) < cfg.repeticoes) {
+                        long t0 = System.nanoTime();
+                        try {
+                            BufferNativo ordenado = ordenar(cfg, conexoes, subarvores, grau, vetor);
+                            latencias[i] = System.nanoTime() - t0;
+                            if (cfg.validar && !Distribuidor.verificarOrdenacao(ordenado)) {
+                                falhas.incrementAndGet();
+                            }
+                            ordenado.liberar();
+                        } catch (Exception e) {
+                            System.err.println("[ERRO] Repetição " + i + " falhou: " + e.getMessage());
+                            latencias[i] = -1;
+                            falhas.incrementAndGet();
+                        }
+                    }
+                }, "Thread-Carga-" + t);
+                threads.add(thread);
+                thread.start();
+            }
+            for (Thread thread : threads) {
+                thread.join();
+            }
+            long duracao = System.nanoTime() - inicio;
+
+            long[] validas = Arrays.stream(latencias).filter(l -> l >= 0).sorted().toArray();
+            resultado.falhas = falhas.get();
+            resultado.vazaoJobs = validas.length / (duracao / 1e9);
+            resultado.vazaoElementos = (double) validas.length * tamanho / (duracao / 1e9);
+            if (validas.length > 0) {
+                resultado.mediaMs = Arrays.stream(validas).average().orElse(0) / 1e6;
+                resultado.p50Ms = percentil(validas, 50) / 1e6;
+                resultado.p95Ms = percentil(validas, 95) / 1e6;
+                resultado.p99Ms = percentil(validas, 99) / 1e6;
+                resultado.maxMs = validas[validas.length - 1] / 1e6;
+            }
+        }
+        return resultado;
+    }
+
+    /**
+     * Uma ordenação do cenário. Com orçamento, a ordenação é feita no próprio vetor,
+     * então cada repetição trabalha em uma cópia da entrada.
+     */
+    private static BufferNativo ordenar(Configuracao cfg, List<ConexaoR> conexoes, List<List<String>> subarvores,
+                                        int grau, BufferNativo vetor) throws Exception {
+        if (cfg.orcamentoMb <= 0) {
+            return cfg.pares
+                    ? Distribuidor.ordenarEntrePares(conexoes, subarvores, vetor)
+                    : Distribuidor.ordenarDistribuido(conexoes, subarvores, grau, vetor);
+        }
+        BufferNativo copia = BufferNativo.alocar(vetor.tamanho());
+        try {
+            copia.copiarDe(vetor);
+            return OrdenacaoOrcada.ordenar(conexoes, subarvores, grau, copia, cfg.orcamentoMb << 20);
+        } catch (Exception e) {
+            copia.liberar();
+            throw e;
+        }
+    }
+
+    /**
+     * Percentil pelo método do posto mais próximo (vetor já ordenado)
+     */
+    private static long percentil(long[] ordenados, double p) {
+        int posto = (int) Math.ceil(p / 100.0 * ordenados.length);
+        return ordenados[Math.max(0, Math.min(ordenados.length - 1, posto - 1))];
+    }
+
+    /**
+     * Gera um vetor fora do heap com a distribuição pedida (reprodutível pela semente).
+     * Também usado pela comparação de OrdenacaoSequencial, para medir os mesmos dados.
+     */
+    public static BufferNativo gerarVetor(int tamanho, String distribuicao, long semente) {
+        Random rnd = new Random(semente * 31 + tamanho);
+        BufferNativo vetor = BufferNativo.alocar(tamanho);
+        ByteBuffer destino = vetor.getByteBuffer();
+        byte[] bloco = new byte[Math.min(BufferNativo.TAMANHO_BLOCO, Math.max(tamanho, 1))];
+        while (destino.hasRemaining()) {
+            int n = Math.min(bloco.length, destino.remaining());
+            rnd.nextBytes(bloco);
+            if (distribuicao.equals("poucos-valores")) {
+                for (int i = 0; i < n; i++) {
+                    bloco[i] &= 0x07;
+                }
+            }
+            destino.put(bloco, 0, n);
+        }
+
+        if (distribuicao.equals("ordenada") || distribuicao.equals("invertida")
+                || distribuicao.equals("quase-ordenada")) {
+            try (BufferNativo aux = BufferNativo.alocar(tamanho)) {
+                Pedido.ordenar(vetor, aux);
+            }
+            if (distribuicao.equals("invertida")) {
+                vetor.inverter(0, tamanho);
+            } else if (distribuicao.equals("quase-ordenada")) {
+                // Altera 1% das posições
+                for (int i = 0; i < tamanho / 100; i++) {
+                    vetor.put(rnd.nextInt(tamanho), (byte) rnd.nextInt(256));
+                }
+            }
+        }
+        return vetor;
+    }
+
+    private static void escreverRelatorio(List<ResultadoCenario> resultados, String formato, PrintStream saida) {
+        if (formato.equals("json")) {
+            saida.println("[");
+            for (int i = 0; i < resultados.size(); i++) {
+                ResultadoCenario r = resultados.get(i);
+                saida.print(String.format(Locale.ROOT,
+                        "  {\"tamanho\": %d, \"distribuicao\": \"%s\", \"receptores\": %d, \"concorrencia\": %d, " +
+                        "\"repeticoes\": %d, \"falhas\": %d, \"vazao_jobs_s\": %.3f, \"vazao_elementos_s\": %.1f, " +
+                        "\"media_ms\": %.3f, \"p50_ms\": %.3f, \"p95_ms\": %.3f, \"p99_ms\": %.3f, \"max_ms\": %.3f}",
+                        r.tamanho, r.distribuicao, r.receptores, r.concorrencia, r.repeticoes, r.falhas,
+                        r.vazaoJobs, r.vazaoElementos, r.mediaMs, r.p50Ms, r.p95Ms, r.p99Ms, r.maxMs));
+                saida.println(i < resultados.size() - 1 ? "," : "");
+            }
+            saida.println("]");
+        } else {
+            saida.println("tamanho,distribuicao,receptores,concorrencia,repeticoes,falhas," +
+                    "vazao_jobs_s,vazao_elementos_s,media_ms,p50_ms,p95_ms,p99_ms,max_ms");
+            for (ResultadoCenario r : resultados) {
+                saida.println(String.format(Locale.ROOT, "%d,%s,%d,%d,%d,%d,%.3f,%.1f,%.3f,%.3f,%.3f,%.3f,%.3f",
+                        r.tamanho, r.distribuicao, r.receptores, r.concorrencia, r.repeticoes, r.falhas,
+                        r.vazaoJobs, r.vazaoElementos, r.mediaMs, r.p50Ms, r.p95Ms, r.p99Ms, r.maxMs));
+            }
+        }
+    }
+}
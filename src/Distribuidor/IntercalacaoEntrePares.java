@@ -0,0 +1,141 @@
+package src.Distribuidor;
+
+import java.util.*;
+import src.Comunicacao.*;
+
+/**
+ * Ordenação distribuída em que a intercalação acontece entre os próprios Receptores.
+ *
+ * Cada Receptor ordena sua parte e a guarda (PedidoRunGuardada); o Distribuidor recebe só
+ * identificadores. Depois, em rodadas de torneio, os Receptores são agrupados em pares e o
+ * que guarda a run maior busca a do parceiro diretamente e intercala as duas
+ * (PedidoIntercalacaoPar). Com k Receptores são ⌈log2 k⌉ rodadas, e os pares de uma
+ * rodada trabalham em paralelo. Só a run final atravessa a rede até o Distribuidor.
+ */
+class IntercalacaoEntrePares {
+
+    /**
+     * Run guardada em um Receptor (índice da conexão que a guarda)
+     */
+    private static class RunRemota {
+        final int conexao;
+        final String id;
+        final int tamanho;
+
+        RunRemota(int conexao, RespostaRunGuardada resposta) {
+            this.conexao = conexao;
+            this.id = resposta.getId();
+            this.tamanho = resposta.getTamanho();
+        }
+    }
+
+    /**
+     * Ordena o vetor e devolve um novo buffer com o resultado (o vetor de entrada não é alterado).
+     * Exige topologia plana: cada conexão é um Receptor que pode ser alcançado pelos demais.
+     */
+    static BufferNativo ordenar(List<ConexaoR> conexoes, BufferNativo vetor) throws Exception {
+        int[] pesos = new int[conexoes.size()];
+        Arrays.fill(pesos, 1);
+        int[] limites = PedidoHierarquico.dividirProporcional(vetor.tamanho(), pesos);
+
+        // Fase 1: cada Receptor ordena e guarda a sua parte
+        RunRemota[] runs = new RunRemota[conexoes.size()];
+        executarEmParalelo(conexoes.size(), "Thread-Run-", i -> {
+            Comunicado c = conexoes.get(i).enviarComando(new PedidoRunGuardada(vetor.fatia(limites[i], limites[i + 1])));
+            runs[i] = new RunRemota(i, (RespostaRunGuardada) c);
+        }, conexoes, runs);
+
+        List<RunRemota> rodada = new ArrayList<>(Arrays.asList(runs));
+        int numeroRodada = 1;
+        try {
+            // Fase 2: torneio; a run maior fica parada e a menor atravessa a rede
+            while (rodada.size() > 1) {
+                System.out.println("[LOG] Rodada de intercalação entre pares #" + numeroRodada + " - " +
+                        rodada.size() + " runs");
+                int numPares = rodada.size() / 2;
+                RunRemota[] vencedoras = new RunRemota[numPares];
+                List<RunRemota> pares = rodada;
+
+                executarEmParalelo(numPares, "Thread-Par-", j -> {
+                    RunRemota a = pares.get(2 * j);
+                    RunRemota b = pares.get(2 * j + 1);
+                    RunRemota destino = a.tamanho >= b.tamanho ? a : b;
+                    RunRemota origem = destino == a ? b : a;
+                    Comunicado c = conexoes.get(destino.conexao).enviarComando(new PedidoIntercalacaoPar(
+                            destino.id, conexoes.get(origem.conexao).getEndereco(), origem.id));
+                    vencedoras[j] = new RunRemota(destino.conexao, (RespostaRunGuardada) c);
+                }, conexoes, vencedoras);
+
+                List<RunRemota> proxima = new ArrayList<>(Arrays.asList(vencedoras));
+                if (rodada.size() % 2 == 1) {
+                    proxima.add(rodada.get(rodada.size() - 1));
+                }
+                rodada = proxima;
+                numeroRodada++;
+            }
+
+            // Fase 3: só a run final volta ao Distribuidor (se a busca falhar, o catch a descarta)
+            RunRemota fim = rodada.get(0);
+            Comunicado c = conexoes.get(fim.conexao).enviarComando(new PedidoBuscarRun(fim.id));
+            rodada.clear();
+            System.out.println("[LOG] Run final (" + fim.tamanho + " elementos) recebida de " + conexoes.get(fim.conexao));
+            return ((Resposta) c).getBuffer();
+        } catch (Exception e) {
+            descartar(conexoes, rodada);
+            throw e;
+        }
+    }
+
+    /**
+     * Executa uma tarefa por índice em threads próprias; se alguma falhar, descarta
+     * as runs que as outras deixaram guardadas e lança a exceção
+     */
+    private static void executarEmParalelo(int quantidade, String nome, Tarefa tarefa,
+                                           List<ConexaoR> conexoes, RunRemota[] resultados) throws Exception {
+        List<Exception> excecoes = Collections.synchronizedList(new ArrayList<>());
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < quantidade; i++) {
+            final int indice = i;
+            Thread thread = new Thread(() -> {
+                try {
+                    tarefa.executar(indice);
+                } catch (Exception e) {
+                    System.err.println("[ERRO] " + Thread.currentThread().getName() + " falhou: " + e.getMessage());
+                    excecoes.add(e);
+                }
+            }, nome + i);
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        if (!excecoes.isEmpty()) {
+            descartar(conexoes, Arrays.asList(resultados));
+            throw new Exception("Falhas na intercalação entre pares: " + excecoes.size() + " erros");
+        }
+    }
+
+    /**
+     * Libera nos Receptores as runs que ainda estão guardadas (melhor esforço;
+     * identificadores já consumidos são ignorados pelo Receptor)
+     */
+    private static void descartar(List<ConexaoR> conexoes, List<RunRemota> runs) {
+        for (RunRemota run : runs) {
+            if (run == null) {
+                continue;
+            }
+            try {
+                conexoes.get(run.conexao).enviarComando(new ComunicadoDescartarRun(run.id));
+            } catch (Exception e) {
+                System.err.println("[AVISO] Não foi possível descartar a run " + run.id + " em " +
+                        conexoes.get(run.conexao) + ": " + e.getMessage());
+            }
+        }
+    }
+
+    private interface Tarefa {
+        void executar(int indice) throws Exception;
+    }
+}
@@ -0,0 +1,272 @@
+package src.Distribuidor;
+
+import java.util.*;
+import java.util.concurrent.Semaphore;
+import src.Comunicacao.*;
+
+/**
+ * Ordenação distribuída com limite de memória fora do heap (orçamento em bytes).
+ *
+ * A ordenação normal chega a ocupar cerca de 4x o vetor (vetor original, respostas e as
+ * duas áreas da intercalação). Aqui o pico fica em torno de "vetor + extra", onde extra é
+ * o que sobra do orçamento:
+ *   1. o vetor é dividido em partições que cabem no extra, repartidas entre todas as
+ *      conexões na proporção do tamanho de cada subárvore (como em ordenarDistribuido),
+ *      com no máximo "emVoo" pedidos ao mesmo tempo, cedidos às conexões por ordem de
+ *      chegada; cada resposta chega em um bloco do pool e é copiada de volta para o lugar
+ *      da própria partição, e o bloco volta ao pool;
+ *   2. as runs ordenadas são intercaladas no próprio vetor, usando um auxiliar do tamanho
+ *      da menor run de cada intercalação (nunca maior que o extra).
+ * O resultado fica no próprio vetor de entrada.
+ */
+class OrdenacaoOrcada {
+
+    /** Menor partição aceita: abaixo disso o custo por pedido domina */
+    private static final int PARTICAO_MINIMA = 64 * 1024;
+
+    /**
+     * Tamanhos escolhidos para um orçamento
+     */
+    static class Plano {
+        final int tamanhoVetor;
+        final long orcamento;
+        final int emVoo;
+        final int tamanhoParticao;
+        final int numParticoes;
+        final int tamanhoAuxiliar;
+
+        Plano(int tamanhoVetor, long orcamento, int emVoo, int tamanhoParticao, int tamanhoAuxiliar) {
+            this.tamanhoVetor = tamanhoVetor;
+            this.orcamento = orcamento;
+            this.emVoo = emVoo;
+            this.tamanhoParticao = tamanhoParticao;
+            this.numParticoes = (int) ((tamanhoVetor + (long) tamanhoParticao - 1) / tamanhoParticao);
+            this.tamanhoAuxiliar = tamanhoAuxiliar;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("orçamento %.1f MB: %d partição(ões) de %.1f MB, %d pedido(s) em voo, " +
+                            "auxiliar de intercalação de %.1f MB",
+                    orcamento / 1048576.0, numParticoes, tamanhoParticao / 1048576.0, emVoo,
+                    tamanhoAuxiliar / 1048576.0);
+        }
+    }
+
+    /**
+     * Contabiliza a memória reservada e o maior valor atingido
+     */
+    private static class Contabilidade {
+        private long emUso;
+        private long pico;
+
+        synchronized void reservar(long bytes) {
+            emUso += bytes;
+            pico = Math.max(pico, emUso);
+        }
+
+        synchronized void devolver(long bytes) {
+            emUso -= bytes;
+        }
+
+        synchronized long getPico() {
+            return pico;
+        }
+    }
+
+    /**
+     * Escolhe partições, pedidos em voo e auxiliar para caber no orçamento.
+     * O vetor de entrada conta no orçamento; o restante é o "extra" dividido entre
+     * os pedidos em voo (fase 1) e depois usado pelo auxiliar (fase 2).
+     */
+    static Plano planejar(int tamanhoVetor, int numConexoes, int somaPesos, long orcamento) {
+        long extra = orcamento - tamanhoVetor;
+        int minimo = Math.min(PARTICAO_MINIMA, Math.max(1, tamanhoVetor));
+        if (extra < minimo) {
+            throw new IllegalArgumentException(String.format(
+                    "Orçamento insuficiente: são necessários ao menos %d bytes (vetor + %d)",
+                    (long) tamanhoVetor + minimo, minimo));
+        }
+
+        // Partições tão grandes quanto possível: uma por receptor da árvore se o extra permitir
+        int emVoo = (int) Math.max(1, Math.min(numConexoes, extra / minimo));
+        int porReceptor = (int) ((tamanhoVetor + (long) somaPesos - 1) / somaPesos);
+        int tamanhoParticao = (int) Math.max(1, Math.min(porReceptor, extra / emVoo));
+
+        // O auxiliar nunca precisa passar da metade do vetor (menor lado da última intercalação)
+        int tamanhoAuxiliar = (int) Math.min(extra, Math.max(1, tamanhoVetor / 2));
+        return new Plano(tamanhoVetor, orcamento, emVoo, tamanhoParticao, tamanhoAuxiliar);
+    }
+
+    /**
+     * Ordena o vetor no próprio lugar respeitando o orçamento
+     * @return o próprio vetor, ordenado
+     */
+    static BufferNativo ordenar(List<ConexaoR> conexoes, List<List<String>> subarvores, int grau,
+                                BufferNativo vetor, long orcamento) throws Exception {
+        int[] pesos = new int[conexoes.size()];
+        int somaPesos = 0;
+        for (int i = 0; i < pesos.length; i++) {
+            pesos[i] = 1 + subarvores.get(i).size();
+            somaPesos += pesos[i];
+        }
+        Plano plano = planejar(vetor.tamanho(), conexoes.size(), somaPesos, orcamento);
+        System.out.println("[LOG] Plano de memória: " + plano);
+
+        Contabilidade contabilidade = new Contabilidade();
+        contabilidade.reservar(vetor.tamanho());
+
+        long inicio = System.currentTimeMillis();
+        ordenarParticoes(conexoes, subarvores, pesos, grau, vetor, plano, contabilidade);
+        long meio = System.currentTimeMillis();
+        intercalarRuns(vetor, plano, contabilidade);
+        long fim = System.currentTimeMillis();
+
+        System.out.println(String.format("[LOG] Pico de memória: %.1f MB de %.1f MB (%.2fx o vetor); " +
+                        "partições em %d ms, intercalação em %d ms",
+                contabilidade.getPico() / 1048576.0, orcamento / 1048576.0,
+                contabilidade.getPico() / (double) Math.max(1, vetor.tamanho()), meio - inicio, fim - meio));
+        return vetor;
+    }
+
+    /**
+     * Fase 1: cada conexão recebe uma faixa de partições proporcional ao peso da sua subárvore
+     * e as envia uma a uma; um semáforo justo limita os pedidos em voo a plano.emVoo, e as
+     * vagas vão passando entre as conexões na ordem em que elas as pedem
+     */
+    private static void ordenarParticoes(List<ConexaoR> conexoes, List<List<String>> subarvores, int[] pesos,
+                                         int grau, BufferNativo vetor, Plano plano, Contabilidade contabilidade)
+            throws Exception {
+        PoolBuffers pool = new PoolBuffers(plano.tamanhoParticao, plano.emVoo);
+        Semaphore vagas = new Semaphore(plano.emVoo, true);
+        int[] faixas = PedidoHierarquico.dividirProporcional(plano.numParticoes, pesos);
+        List<Exception> excecoes = Collections.synchronizedList(new ArrayList<>());
+        List<Thread> threads = new ArrayList<>();
+
+        for (int i = 0; i < conexoes.size(); i++) {
+            final ConexaoR conexao = conexoes.get(i);
+            final List<String> subarvore = subarvores.get(i);
+            final int primeira = faixas[i];
+            final int ultima = faixas[i + 1];
+            if (primeira == ultima) {
+                continue;
+            }
+            Thread thread = new Thread(() -> {
+                try {
+                    for (int p = primeira; p < ultima && excecoes.isEmpty(); p++) {
+                        int inicio = p * plano.tamanhoParticao;
+                        int fim = Math.min(vetor.tamanho(), inicio + plano.tamanhoParticao);
+                        BufferNativo parte = vetor.fatia(inicio, fim);
+
+                        vagas.acquire();
+                        contabilidade.reservar(parte.tamanho());
+                        try {
+                            Pedido pedido = subarvore.isEmpty()
+                                    ? new Pedido(parte)
+                                    : new PedidoHierarquico(parte, subarvore, grau);
+                            BufferNativo ordenado = conexao.enviarPedido(pedido, pool).getBuffer();
+                            // A partição original já foi enviada: o resultado ocupa o lugar dela
+                            parte.copiarDe(ordenado);
+                            pool.devolver(ordenado);
+                        } finally {
+                            contabilidade.devolver(parte.tamanho());
+                            vagas.release();
+                        }
+                    }
+                } catch (Exception e) {
+                    System.err.println("[ERRO] Falha ao comunicar com " + conexao + ": " + e.getMessage());
+                    excecoes.add(e);
+                }
+            }, "Thread-Particoes-" + i);
+            threads.add(thread);
+            thread.start();
+        }
+
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        System.out.println("[LOG] Pool de respostas: " + pool);
+        pool.encerrar();
+
+        if (!excecoes.isEmpty()) {
+            throw new Exception("Falhas na comunicação com receptores: " + excecoes.size() + " erros");
+        }
+    }
+
+    /**
+     * Fase 2: intercala as runs de baixo para cima enquanto o resultado couber no auxiliar;
+     * depois absorve as runs restantes uma a uma (cada uma cabe no auxiliar)
+     */
+    private static void intercalarRuns(BufferNativo vetor, Plano plano, Contabilidade contabilidade) {
+        int n = vetor.tamanho();
+        if (plano.numParticoes < 2) {
+            return;
+        }
+
+        contabilidade.reservar(plano.tamanhoAuxiliar);
+        try (BufferNativo aux = BufferNativo.alocar(plano.tamanhoAuxiliar)) {
+            int largura = plano.tamanhoParticao;
+            while (largura < n && 2L * largura <= plano.tamanhoAuxiliar) {
+                for (int inicio = 0; inicio + largura < n; inicio += 2 * largura) {
+                    intercalar(vetor, aux, inicio, inicio + largura, (int) Math.min(n, inicio + 2L * largura));
+                }
+                largura *= 2;
+            }
+
+            for (int meio = largura; meio < n; meio += largura) {
+                intercalar(vetor, aux, 0, meio, (int) Math.min(n, (long) meio + largura));
+            }
+        } finally {
+            contabilidade.devolver(plano.tamanhoAuxiliar);
+        }
+    }
+
+    /**
+     * Intercala [inicio, meio) e [meio, fim) copiando só o lado menor para o auxiliar
+     */
+    static void intercalar(BufferNativo dados, BufferNativo aux, int inicio, int meio, int fim) {
+        if (meio <= inicio || meio >= fim || dados.get(meio - 1) <= dados.get(meio)) {
+            return;
+        }
+
+        int tamanhoEsq = meio - inicio;
+        int tamanhoDir = fim - meio;
+        if (tamanhoEsq <= tamanhoDir) {
+            // Esquerda no auxiliar, preenchendo da esquerda para a direita
+            aux.copiar(0, dados, inicio, tamanhoEsq);
+            int i = 0, j = meio, k = inicio;
+            while (i < tamanhoEsq && j < fim) {
+                byte a = aux.get(i);
+                byte b = dados.get(j);
+                if (b < a) {
+                    dados.put(k++, b);
+                    j++;
+                } else {
+                    dados.put(k++, a);
+                    i++;
+                }
+            }
+            if (i < tamanhoEsq) {
+                dados.copiar(k, aux, i, tamanhoEsq - i);
+            }
+        } else {
+            // Direita no auxiliar, preenchendo da direita para a esquerda
+            aux.copiar(0, dados, meio, tamanhoDir);
+            int i = meio - 1, j = tamanhoDir - 1, k = fim - 1;
+            while (i >= inicio && j >= 0) {
+                byte a = dados.get(i);
+                byte b = aux.get(j);
+                if (a > b) {
+                    dados.put(k--, a);
+                    i--;
+                } else {
+                    dados.put(k--, b);
+                    j--;
+                }
+            }
+            if (j >= 0) {
+                dados.copiar(inicio, aux, 0, j + 1);
+            }
+        }
+    }
+}
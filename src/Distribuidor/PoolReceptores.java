@@ -0,0 +1,284 @@
+package src.Distribuidor;
+
+import java.io.IOException;
+import java.util.*;
+import src.Comunicacao.*;
+
+/**
+ * Pool de conexões persistentes com os Receptores, compartilhado entre vários trabalhos.
+ *
+ * Mantém até "conexoesPorReceptor" conexões abertas com cada Receptor. Cada conexão
+ * atende um pedido por vez, então trabalhos diferentes usam conexões diferentes e
+ * o Receptor os processa em paralelo (uma thread por conexão). Uma thread de
+ * verificação testa periodicamente as conexões ociosas e reabre as que caíram.
+ *
+ * Um trabalho grande (uma conexão por Receptor) vai guardando as conexões à medida que
+ * ficam livres; enquanto ele espera, os pequenos não usam mais que (total - 1) conexões
+ * de cada Receptor, então a que falta sempre acaba chegando a ele. Empréstimos só
+ * desistem depois de um tempo sem nenhum Receptor saudável, nunca por o pool estar ocupado.
+ */
+class PoolReceptores {
+
+    private static final int INTERVALO_VERIFICACAO_MS = 5000;
+    private static final int TEMPO_LIMITE_VERIFICACAO_MS = 2000;
+    /** Tempo que um empréstimo espera sem nenhum Receptor saudável antes de desistir */
+    private static final int TEMPO_LIMITE_EMPRESTIMO_MS = 30000;
+
+    /**
+     * Estado de um Receptor no pool
+     */
+    private static class NoReceptor {
+        final String endereco;
+        final Deque<ConexaoR> livres = new ArrayDeque<>();
+        int emUso;
+        // Quantas das conexões em uso foram emprestadas por emprestarMenosOcupada()
+        int pequenos;
+
+        NoReceptor(String endereco) {
+            this.endereco = endereco;
+        }
+
+        int total() {
+            return livres.size() + emUso;
+        }
+    }
+
+    private final List<NoReceptor> nos = new ArrayList<>();
+    private final Map<ConexaoR, NoReceptor> donos = new HashMap<>();
+    private final Set<ConexaoR> emprestadasPequenos = new HashSet<>();
+    private final int conexoesPorReceptor;
+    // Um trabalho grande está juntando suas conexões (só um por vez)
+    private boolean coletando;
+    private volatile boolean ativo = true;
+
+    PoolReceptores(List<String> enderecos, int conexoesPorReceptor) {
+        this.conexoesPorReceptor = conexoesPorReceptor;
+        for (String endereco : enderecos) {
+            nos.add(new NoReceptor(endereco));
+        }
+        completarConexoes();
+    }
+
+    int getConexoesPorReceptor() {
+        return conexoesPorReceptor;
+    }
+
+    /**
+     * Número de Receptores com pelo menos uma conexão aberta
+     */
+    synchronized int receptoresSaudaveis() {
+        int saudaveis = 0;
+        for (NoReceptor no : nos) {
+            if (no.total() > 0) {
+                saudaveis++;
+            }
+        }
+        return saudaveis;
+    }
+
+    /**
+     * Empresta uma conexão do Receptor menos ocupado (espera se todas estiverem em uso
+     * ou reservadas para um trabalho grande)
+     */
+    synchronized ConexaoR emprestarMenosOcupada() throws IOException, InterruptedException {
+        long limite = System.currentTimeMillis() + TEMPO_LIMITE_EMPRESTIMO_MS;
+        while (true) {
+            NoReceptor escolhido = null;
+            for (NoReceptor no : nos) {
+                boolean permitido = !coletando || no.pequenos < no.total() - 1;
+                if (!no.livres.isEmpty() && permitido && (escolhido == null || no.emUso < escolhido.emUso)) {
+                    escolhido = no;
+                }
+            }
+            if (escolhido != null) {
+                ConexaoR conexao = retirar(escolhido);
+                escolhido.pequenos++;
+                emprestadasPequenos.add(conexao);
+                return conexao;
+            }
+            limite = aguardar(limite);
+        }
+    }
+
+    /**
+     * Empresta uma conexão de cada Receptor saudável, guardando cada uma assim que fica
+     * livre até ter todas
+     */
+    synchronized List<ConexaoR> emprestarUmaPorReceptor() throws IOException, InterruptedException {
+        long limite = System.currentTimeMillis() + TEMPO_LIMITE_EMPRESTIMO_MS;
+        while (coletando) {
+            limite = aguardar(limite);
+        }
+        coletando = true;
+
+        Map<NoReceptor, ConexaoR> guardadas = new HashMap<>();
+        boolean entregue = false;
+        try {
+            while (true) {
+                boolean completo = true;
+                boolean algumSaudavel = false;
+                for (NoReceptor no : nos) {
+                    if (guardadas.containsKey(no)) {
+                        algumSaudavel = true;
+                    } else if (no.total() > 0) {
+                        algumSaudavel = true;
+                        if (no.livres.isEmpty()) {
+                            completo = false;
+                        } else {
+                            guardadas.put(no, retirar(no));
+                        }
+                    }
+                }
+                completo &= algumSaudavel;
+                if (completo) {
+                    List<ConexaoR> conexoes = new ArrayList<>();
+                    for (NoReceptor no : nos) {
+                        if (guardadas.containsKey(no)) {
+                            conexoes.add(guardadas.get(no));
+                        }
+                    }
+                    entregue = true;
+                    return conexoes;
+                }
+                limite = aguardar(limite);
+            }
+        } finally {
+            coletando = false;
+            if (!entregue) {
+                for (Map.Entry<NoReceptor, ConexaoR> guardada : guardadas.entrySet()) {
+                    guardada.getKey().emUso--;
+                    if (ativo) {
+                        guardada.getKey().livres.push(guardada.getValue());
+                    } else {
+                        donos.remove(guardada.getValue());
+                        guardada.getValue().fechar();
+                    }
+                }
+            }
+            notifyAll();
+        }
+    }
+
+    /**
+     * Devolve uma conexão ao pool. Se o trabalho falhou ("suspeita"), a conexão
+     * é verificada antes e descartada caso o Receptor não responda.
+     */
+    void devolver(ConexaoR conexao, boolean suspeita) {
+        boolean saudavel = !suspeita || conexao.verificar(TEMPO_LIMITE_VERIFICACAO_MS);
+        synchronized (this) {
+            NoReceptor no = donos.get(conexao);
+            no.emUso--;
+            if (emprestadasPequenos.remove(conexao)) {
+                no.pequenos--;
+            }
+            if (saudavel && ativo) {
+                no.livres.push(conexao);
+            } else {
+                donos.remove(conexao);
+                conexao.fechar();
+            }
+            notifyAll();
+        }
+    }
+
+    /**
+     * Inicia a thread que verifica as conexões ociosas e reabre as que faltam
+     */
+    void iniciarVerificacao() {
+        Thread thread = new Thread(() -> {
+            while (ativo) {
+                try {
+                    Thread.sleep(INTERVALO_VERIFICACAO_MS);
+                } catch (InterruptedException e) {
+                    return;
+                }
+                verificarOciosas();
+                completarConexoes();
+            }
+        }, "Thread-Verificacao-Pool");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Envia encerramento e fecha todas as conexões livres
+     */
+    void encerrar() {
+        List<ConexaoR> conexoes = new ArrayList<>();
+        synchronized (this) {
+            ativo = false;
+            for (NoReceptor no : nos) {
+                conexoes.addAll(no.livres);
+                no.livres.clear();
+            }
+            notifyAll();
+        }
+        Distribuidor.encerrarConexoes(conexoes);
+    }
+
+    private void verificarOciosas() {
+        for (NoReceptor no : nos) {
+            List<ConexaoR> ociosas;
+            synchronized (this) {
+                ociosas = new ArrayList<>(no.livres);
+                no.livres.clear();
+                no.emUso += ociosas.size();
+            }
+            for (ConexaoR conexao : ociosas) {
+                devolver(conexao, true);
+            }
+        }
+    }
+
+    /**
+     * Abre conexões até cada Receptor ter "conexoesPorReceptor"
+     */
+    private void completarConexoes() {
+        for (NoReceptor no : nos) {
+            int faltando;
+            synchronized (this) {
+                faltando = ativo ? conexoesPorReceptor - no.total() : 0;
+            }
+            for (int i = 0; i < faltando; i++) {
+                try {
+                    String[] partes = no.endereco.split(":");
+                    ConexaoR conexao = new ConexaoR(partes[0], Integer.parseInt(partes[1]));
+                    synchronized (this) {
+                        donos.put(conexao, no);
+                        no.livres.push(conexao);
+                        notifyAll();
+                    }
+                } catch (IOException e) {
+                    System.err.println("[AVISO] Receptor " + no.endereco + " indisponível: " + e.getMessage());
+                    break;
+                }
+            }
+        }
+    }
+
+    private ConexaoR retirar(NoReceptor no) {
+        no.emUso++;
+        return no.livres.pop();
+    }
+
+    /**
+     * Espera alguma conexão mudar de estado. Com algum Receptor saudável não há limite
+     * (o pool só está ocupado) e o prazo recomeça.
+     * @return prazo para a próxima espera
+     */
+    private long aguardar(long limite) throws IOException, InterruptedException {
+        if (!ativo) {
+            throw new IOException("Pool de receptores encerrado");
+        }
+        if (receptoresSaudaveis() > 0) {
+            wait(INTERVALO_VERIFICACAO_MS);
+            return System.currentTimeMillis() + TEMPO_LIMITE_EMPRESTIMO_MS;
+        }
+        long restante = limite - System.currentTimeMillis();
+        if (restante <= 0) {
+            throw new IOException("Nenhum receptor disponível");
+        }
+        wait(restante);
+        return limite;
+    }
+}
@@ -0,0 +1,389 @@
+package src.Distribuidor;
+
+import java.io.*;
+import java.net.*;
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import src.Comunicacao.*;
+
+/**
+ * Serviço de ordenação de longa duração (coordenador compartilhado por vários clientes).
+ *
+ * Clientes locais conectam-se por TCP (loopback) e enviam Pedido ou PedidoTrabalho,
+ * recebendo uma Resposta, exatamente como falariam com um Receptor. Os trabalhos
+ * entram em duas filas com prioridade:
+ *   - pequenos: vão inteiros para o Receptor menos ocupado (baixa latência);
+ *   - grandes: são divididos entre todos os Receptores saudáveis.
+ * Trabalhos grandes usam no máximo (conexoesPorReceptor - 1) conexões de cada Receptor
+ * ao mesmo tempo, então sempre sobra uma conexão por Receptor para os pequenos; em troca,
+ * um grande que está esperando tem as conexões reservadas no pool (ver PoolReceptores).
+ * Consultas (PedidoSelecao, PedidoContagem) vão inteiras a um Receptor, como os pequenos.
+ *
+ * Uso:
+ *   java -cp . src.Distribuidor.ServicoOrdenacao <porta> <host:porta,host:porta,...> [conexoesPorReceptor]
+ */
+public class ServicoOrdenacao {
+
+    /** Trabalhos com até este número de elementos não são divididos */
+    private static final int LIMIAR_PEQUENO = 256 * 1024;
+
+    /** Threads despachantes dedicadas aos trabalhos pequenos */
+    private static final int DESPACHANTES_PEQUENOS = 4;
+
+    /** Tentativas por trabalho (uma nova tentativa após falha de Receptor) */
+    private static final int TENTATIVAS = 2;
+
+    /**
+     * Trabalho na fila: menor prioridade primeiro; empate por ordem de chegada
+     */
+    private static class Trabalho implements Comparable<Trabalho> {
+        final BufferNativo dados;
+        final int prioridade;
+        final long sequencia;
+        final CountDownLatch concluido = new CountDownLatch(1);
+        BufferNativo resultado;
+        Exception erro;
+
+        Trabalho(BufferNativo dados, int prioridade, long sequencia) {
+            this.dados = dados;
+            this.prioridade = prioridade;
+            this.sequencia = sequencia;
+        }
+
+        @Override
+        public int compareTo(Trabalho outro) {
+            if (prioridade != outro.prioridade) {
+                return Integer.compare(prioridade, outro.prioridade);
+            }
+            return Long.compare(sequencia, outro.sequencia);
+        }
+    }
+
+    private final PoolReceptores pool;
+    private final PriorityBlockingQueue<Trabalho> filaPequenos = new PriorityBlockingQueue<>();
+    private final PriorityBlockingQueue<Trabalho> filaGrandes = new PriorityBlockingQueue<>();
+    private final AtomicLong sequencia = new AtomicLong();
+
+    ServicoOrdenacao(PoolReceptores pool) {
+        this.pool = pool;
+    }
+
+    public static void main(String[] args) {
+        if (args.length < 2) {
+            System.err.println("Uso: ServicoOrdenacao <porta> <host:porta,host:porta,...> [conexoesPorReceptor]");
+            return;
+        }
+
+        ServerSocket serverSocket = null;
+        PoolReceptores pool = null;
+
+        try {
+            int porta = Integer.parseInt(args[0]);
+            List<String> servidores = Arrays.asList(args[1].split(","));
+            int conexoesPorReceptor = args.length > 2 ? Integer.parseInt(args[2]) : 2;
+            if (conexoesPorReceptor < 2) {
+                System.err.println("[ERRO] São necessárias ao menos 2 conexões por receptor");
+                return;
+            }
+
+            System.out.println("=== INICIANDO SERVIÇO DE ORDENAÇÃO ===");
+            pool = new PoolReceptores(servidores, conexoesPorReceptor);
+            pool.iniciarVerificacao();
+            System.out.println("[LOG] Receptores disponíveis: " + pool.receptoresSaudaveis() + "/" + servidores.size());
+
+            ServicoOrdenacao servico = new ServicoOrdenacao(pool);
+            servico.iniciarDespachantes();
+
+            serverSocket = new ServerSocket(porta, 50, InetAddress.getLoopbackAddress());
+            System.out.println("[LOG] Serviço aguardando clientes na porta: " + serverSocket.getLocalPort());
+
+            int numeroCliente = 0;
+            while (true) {
+                Socket cliente = serverSocket.accept();
+                final int idCliente = ++numeroCliente;
+                System.out.println("[LOG] Cliente #" + idCliente + " conectado");
+
+                Thread threadCliente = new Thread(() -> servico.tratarCliente(cliente, idCliente),
+                        "Thread-Cliente-" + idCliente);
+                threadCliente.start();
+            }
+
+        } catch (NumberFormatException e) {
+            System.err.println("[ERRO FATAL] Porta inválida fornecida");
+        } catch (Exception e) {
+            System.err.println("[ERRO FATAL] Exceção no serviço: " + e.getMessage());
+            e.printStackTrace();
+        } finally {
+            if (pool != null) {
+                pool.encerrar();
+            }
+            if (serverSocket != null && !serverSocket.isClosed()) {
+                try {
+                    serverSocket.close();
+                } catch (IOException e) {
+                    System.err.println("[ERRO] Ao fechar ServerSocket: " + e.getMessage());
+                }
+            }
+            System.out.println("=== SERVIÇO DE ORDENAÇÃO ENCERRADO ===");
+        }
+    }
+
+    /**
+     * Cria as threads que consomem as filas: várias para pequenos,
+     * (conexoesPorReceptor - 1) para grandes
+     */
+    void iniciarDespachantes() {
+        for (int i = 0; i < DESPACHANTES_PEQUENOS; i++) {
+            iniciarDespachante(filaPequenos, false, "Thread-Despachante-Pequenos-" + i);
+        }
+        for (int i = 0; i < pool.getConexoesPorReceptor() - 1; i++) {
+            iniciarDespachante(filaGrandes, true, "Thread-Despachante-Grandes-" + i);
+        }
+    }
+
+    /**
+     * Coloca um trabalho na fila adequada ao seu tamanho
+     */
+    Trabalho submeter(BufferNativo dados, int prioridade) {
+        Trabalho trabalho = new Trabalho(dados, prioridade, sequencia.getAndIncrement());
+        if (dados.tamanho() <= LIMIAR_PEQUENO) {
+            filaPequenos.put(trabalho);
+        } else {
+            filaGrandes.put(trabalho);
+        }
+        return trabalho;
+    }
+
+    private void iniciarDespachante(PriorityBlockingQueue<Trabalho> fila, boolean grande, String nome) {
+        Thread thread = new Thread(() -> {
+            while (true) {
+                Trabalho trabalho;
+                try {
+                    trabalho = fila.take();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                executar(trabalho, grande);
+                trabalho.concluido.countDown();
+            }
+        }, nome);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Executa um trabalho no pool, tentando de novo se algum Receptor falhar
+     */
+    private void executar(Trabalho trabalho, boolean grande) {
+        for (int tentativa = 1; tentativa <= TENTATIVAS; tentativa++) {
+            try {
+                trabalho.resultado = grande ? executarGrande(trabalho) : executarPequeno(trabalho);
+                trabalho.erro = null;
+                return;
+            } catch (Exception e) {
+                System.err.println("[ERRO] Trabalho #" + trabalho.sequencia + " falhou (tentativa " +
+                        tentativa + "): " + e.getMessage());
+                trabalho.erro = e;
+            }
+        }
+    }
+
+    private BufferNativo executarPequeno(Trabalho trabalho) throws Exception {
+        ConexaoR conexao = pool.emprestarMenosOcupada();
+        boolean falhou = true;
+        try {
+            Resposta resposta = conexao.enviarPedido(new Pedido(trabalho.dados));
+            falhou = false;
+            return resposta.getBuffer();
+        } finally {
+            pool.devolver(conexao, falhou);
+        }
+    }
+
+    private BufferNativo executarGrande(Trabalho trabalho) throws Exception {
+        List<ConexaoR> conexoes = pool.emprestarUmaPorReceptor();
+        boolean falhou = true;
+        try {
+            List<List<String>> subarvores = new ArrayList<>();
+            for (int i = 0; i < conexoes.size(); i++) {
+                subarvores.add(Collections.emptyList());
+            }
+            BufferNativo resultado = Distribuidor.ordenarDistribuido(conexoes, subarvores, 0, trabalho.dados);
+            falhou = false;
+            return resultado;
+        } finally {
+            for (ConexaoR conexao : conexoes) {
+                pool.devolver(conexao, falhou);
+            }
+        }
+    }
+
+    /**
+     * Atende um cliente: cada Pedido vira um trabalho na fila e a Resposta
+     * volta pela mesma conexão quando o trabalho termina
+     */
+    private void tratarCliente(Socket cliente, int idCliente) {
+        try (Socket socket = cliente) {
+            socket.setTcpNoDelay(true);
+            ObjectInputStream entrada = new ObjectInputStream(socket.getInputStream());
+            ObjectOutputStream saida = new ObjectOutputStream(socket.getOutputStream());
+            saida.flush();
+            // PedidoMapeado só depois da negociação de memória compartilhada
+            boolean memoriaCompartilhada = false;
+
+            while (true) {
+                Object objeto = entrada.readObject();
+
+                // Só a ordenação completa entra na fila; as subclasses de Pedido têm respostas próprias
+                if (objeto.getClass() == Pedido.class || objeto.getClass() == PedidoTrabalho.class) {
+                    Pedido pedido = (Pedido) objeto;
+                    int prioridade = pedido instanceof PedidoTrabalho
+                            ? ((PedidoTrabalho) pedido).getPrioridade()
+                            : PedidoTrabalho.PRIORIDADE_NORMAL;
+
+                    long inicio = System.currentTimeMillis();
+                    Trabalho trabalho = submeter(pedido.getBuffer(), prioridade);
+                    trabalho.concluido.await();
+
+                    if (trabalho.erro != null) {
+                        pedido.getBuffer().liberar();
+                        System.err.println("[ERRO] Cliente #" + idCliente + " - Trabalho #" +
+                                trabalho.sequencia + " não pôde ser concluído");
+                        responderErro(saida, "Trabalho #" + trabalho.sequencia + " não pôde ser concluído: " +
+                                trabalho.erro.getMessage());
+                        continue;
+                    }
+
+                    saida.writeObject(new Resposta(trabalho.resultado));
+                    saida.flush();
+                    saida.reset();
+                    trabalho.resultado.liberar();
+                    pedido.getBuffer().liberar();
+
+                    System.out.println("[LOG] Cliente #" + idCliente + " - Trabalho #" + trabalho.sequencia +
+                            " (" + pedido.getTamanho() + " elementos, prioridade " + prioridade +
+                            ") concluído em " + (System.currentTimeMillis() - inicio) + " ms");
+                }
+                else if (objeto instanceof PedidoSelecao || objeto instanceof PedidoContagem) {
+                    responderConsulta((Pedido) objeto, saida, idCliente);
+                }
+                else if (objeto instanceof PedidoMapeado) {
+                    // Cliente na mesma máquina: o vetor e o resultado passam pelo arquivo mapeado
+                    PedidoMapeado pedido = (PedidoMapeado) objeto;
+                    long inicio = System.currentTimeMillis();
+                    BufferNativo mapeado;
+                    try {
+                        if (!memoriaCompartilhada) {
+                            throw new IOException("memória compartilhada não negociada nesta conexão");
+                        }
+                        mapeado = ComunicadoMemoriaCompartilhada.mapearRecebido(pedido.getArquivo(), pedido.getTamanho());
+                    } catch (IOException e) {
+                        System.err.println("[ERRO] Cliente #" + idCliente + " - PedidoMapeado recusado: " + e.getMessage());
+                        responderErro(saida, "Arquivo mapeado recusado: " + e.getMessage());
+                        continue;
+                    }
+                    try (BufferNativo dados = mapeado) {
+                        Trabalho trabalho = submeter(dados, PedidoTrabalho.PRIORIDADE_NORMAL);
+                        trabalho.concluido.await();
+
+                        if (trabalho.erro != null) {
+                            System.err.println("[ERRO] Cliente #" + idCliente + " - Trabalho #" +
+                                    trabalho.sequencia + " não pôde ser concluído");
+                            responderErro(saida, "Trabalho #" + trabalho.sequencia + " não pôde ser concluído: " +
+                                    trabalho.erro.getMessage());
+                            continue;
+                        }
+
+                        dados.copiarDe(trabalho.resultado);
+                        trabalho.resultado.liberar();
+                        saida.writeObject(new RespostaMapeada());
+                        saida.flush();
+                        saida.reset();
+
+                        System.out.println("[LOG] Cliente #" + idCliente + " - Trabalho #" + trabalho.sequencia +
+                                " (" + pedido.getTamanho() + " elementos, memória compartilhada) concluído em " +
+                                (System.currentTimeMillis() - inicio) + " ms");
+                    }
+                }
+                else if (objeto instanceof ComunicadoMemoriaCompartilhada) {
+                    ComunicadoMemoriaCompartilhada confirmacao = ((ComunicadoMemoriaCompartilhada) objeto).confirmar();
+                    memoriaCompartilhada = confirmacao.getMarca() != 0;
+                    saida.writeObject(confirmacao);
+                    saida.flush();
+                    saida.reset();
+                }
+                else if (objeto instanceof PedidoPorHash) {
+                    // O serviço não guarda resultados: o cliente envia o vetor e não pergunta mais
+                    saida.writeObject(new ComunicadoCacheAusente(false));
+                    saida.flush();
+                    saida.reset();
+                }
+                else if (objeto instanceof ComunicadoVerificacao) {
+                    saida.writeObject(objeto);
+                    saida.flush();
+                    saida.reset();
+                }
+                else if (objeto instanceof ComunicadoEncerramento) {
+                    System.out.println("[LOG] Cliente #" + idCliente + " - ComunicadoEncerramento recebido");
+                    break;
+                }
+                else {
+                    // PedidoHierarquico e PedidoRunGuardada dependem da topologia dos Receptores
+                    if (objeto instanceof Pedido) {
+                        ((Pedido) objeto).getBuffer().liberar();
+                    }
+                    System.err.println("[ERRO] Cliente #" + idCliente +
+                            " - Objeto desconhecido recebido: " + objeto.getClass().getName());
+                    responderErro(saida, "Objeto não suportado pelo serviço: " + objeto.getClass().getName());
+                }
+            }
+        } catch (EOFException e) {
+            System.err.println("[ERRO] Cliente #" + idCliente + " - Fim inesperado do stream (cliente desconectou?)");
+        } catch (Exception e) {
+            System.err.println("[ERRO] Cliente #" + idCliente + " - " + e.getMessage());
+        }
+    }
+
+    /**
+     * Repassa uma consulta (PedidoSelecao, PedidoContagem) inteira ao Receptor menos ocupado:
+     * o resultado parcial de um único Receptor já é o resultado do vetor todo
+     */
+    private void responderConsulta(Pedido consulta, ObjectOutputStream saida, int idCliente) throws Exception {
+        Comunicado resultado;
+        int tamanho = consulta.getTamanho();
+        long inicio = System.currentTimeMillis();
+        try {
+            ConexaoR conexao = pool.emprestarMenosOcupada();
+            boolean falhou = true;
+            try {
+                resultado = conexao.enviarConsulta(consulta);
+                falhou = false;
+            } finally {
+                pool.devolver(conexao, falhou);
+            }
+        } catch (IOException | ClassNotFoundException e) {
+            System.err.println("[ERRO] Cliente #" + idCliente + " - Consulta falhou: " + e.getMessage());
+            responderErro(saida, "Consulta não pôde ser concluída: " + e.getMessage());
+            return;
+        } finally {
+            consulta.getBuffer().liberar();
+        }
+
+        saida.writeObject(resultado);
+        saida.flush();
+        saida.reset();
+        if (resultado instanceof Resposta) {
+            ((Resposta) resultado).getBuffer().liberar();
+        }
+        System.out.println("[LOG] Cliente #" + idCliente + " - " + consulta.getClass().getSimpleName() + " (" +
+                tamanho + " elementos) respondida em " + (System.currentTimeMillis() - inicio) + " ms");
+    }
+
+    private static void responderErro(ObjectOutputStream saida, String mensagem) throws IOException {
+        saida.writeObject(new ComunicadoErro(mensagem));
+        saida.flush();
+        saida.reset();
+    }
+}
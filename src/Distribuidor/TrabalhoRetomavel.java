@@ -0,0 +1,265 @@
+package src.Distribuidor;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.*;
+import src.Comunicacao.*;
+
+/**
+ * Ordenação longa com pontos de retomada em disco (ver DiarioTrabalho).
+ *
+ * O vetor é dividido em mais partições que receptores; cada run ordenada que volta é
+ * gravada no diretório do trabalho antes de ser registrada no diário. Se o Distribuidor
+ * cair, rodar o mesmo comando de novo recarrega a entrada e as runs já concluídas e
+ * envia só as partições que faltam. Se um receptor cair no meio do trabalho, a partição
+ * dele volta para a fila (onde as threads dos outros receptores a esperam) e a thread
+ * tenta se reconectar antes de desistir.
+ *
+ * Uso:
+ *   java -cp . src.Distribuidor.TrabalhoRetomavel <diretório> <host:porta,...> <tamanho> [partição KB]
+ *   java -cp . src.Distribuidor.TrabalhoRetomavel <diretório> <host:porta,...>      (retoma)
+ */
+public class TrabalhoRetomavel {
+
+    /** Partições por receptor quando o tamanho da partição não é informado */
+    private static final int PARTICOES_POR_RECEPTOR = 4;
+
+    private static final int TENTATIVAS_RECONEXAO = 3;
+    private static final long ESPERA_RECONEXAO_MS = 1000;
+
+    /**
+     * Partições pendentes compartilhadas pelas threads dos receptores. Uma thread que encontra
+     * a fila vazia só termina quando todas as partições foram concluídas: enquanto houver alguma
+     * em andamento, ela espera, porque a partição pode voltar se o receptor que a tem falhar.
+     */
+    private static class FilaParticoes {
+        private final Deque<Integer> particoes;
+        private int naoConcluidas;
+
+        FilaParticoes(Collection<Integer> pendentes) {
+            this.particoes = new ArrayDeque<>(pendentes);
+            this.naoConcluidas = pendentes.size();
+        }
+
+        /**
+         * Próxima partição, ou null quando não falta nenhuma
+         */
+        synchronized Integer proxima() throws InterruptedException {
+            while (particoes.isEmpty() && naoConcluidas > 0) {
+                wait();
+            }
+            return particoes.poll();
+        }
+
+        synchronized void concluir() {
+            if (--naoConcluidas == 0) {
+                notifyAll();
+            }
+        }
+
+        /**
+         * Devolve uma partição que falhou, na frente da fila, e acorda quem estiver esperando
+         */
+        synchronized void devolver(int particao) {
+            particoes.addFirst(particao);
+            notifyAll();
+        }
+
+        synchronized List<Integer> restantes() {
+            return new ArrayList<>(particoes);
+        }
+    }
+
+    public static void main(String[] args) {
+        if (args.length < 2) {
+            System.err.println("Uso: TrabalhoRetomavel <diretório> <host:porta,...> [tamanho] [partição KB]");
+            return;
+        }
+
+        Path diretorio = Paths.get(args[0]);
+        String[] servidores = args[1].split(",");
+        DiarioTrabalho diario = null;
+        BufferNativo entrada = null;
+
+        try {
+            if (DiarioTrabalho.existe(diretorio)) {
+                diario = DiarioTrabalho.abrir(diretorio);
+                System.out.println("[LOG] Retomando trabalho em " + diretorio + ": " +
+                        (diario.getNumParticoes() - diario.pendentes().size()) + "/" +
+                        diario.getNumParticoes() + " partição(ões) já concluída(s)");
+            } else {
+                if (args.length < 3) {
+                    System.err.println("[ERRO] Trabalho novo: informe o tamanho do vetor");
+                    return;
+                }
+                int tamanho = Integer.parseInt(args[2]);
+                int particao = args.length > 3
+                        ? Integer.parseInt(args[3]) * 1024
+                        : Math.max(1, (tamanho + PARTICOES_POR_RECEPTOR * servidores.length - 1)
+                                / (PARTICOES_POR_RECEPTOR * servidores.length));
+                try (BufferNativo vetor = ExecucaoLote.gerarVetor(tamanho, "aleatoria", System.nanoTime())) {
+                    diario = DiarioTrabalho.criar(diretorio, vetor, particao);
+                }
+                System.out.println("[LOG] Trabalho criado em " + diretorio + ": " + tamanho + " elementos em " +
+                        diario.getNumParticoes() + " partição(ões)");
+            }
+
+            if (diario.isFinalizado()) {
+                System.out.println("[LOG] Trabalho já finalizado; resultado em " + diretorio.resolve("resultado.bin"));
+                return;
+            }
+
+            entrada = diario.carregarEntrada();
+            long inicio = System.currentTimeMillis();
+            List<Integer> pendentes = ordenarPendentes(diario, entrada, servidores);
+            if (!pendentes.isEmpty()) {
+                System.err.println("[ERRO] " + pendentes.size() + " partição(ões) sem receptor disponível; " +
+                        "execute o mesmo comando de novo para retomar");
+                return;
+            }
+            long meio = System.currentTimeMillis();
+
+            BufferNativo resultado = intercalar(diario);
+            try {
+                boolean correto = Distribuidor.verificarOrdenacao(resultado);
+                diario.registrarResultado(resultado);
+                long fim = System.currentTimeMillis();
+
+                System.out.println("\n[RESULTADO] Partições em " + (meio - inicio) + " ms, intercalação em " +
+                        (fim - meio) + " ms; resultado em " + diretorio.resolve("resultado.bin"));
+                if (correto) {
+                    System.out.println("[SUCESSO] Vetor ordenado corretamente!");
+                } else {
+                    System.err.println("[ERRO] Vetor NÃO está ordenado corretamente!");
+                }
+            } finally {
+                resultado.liberar();
+            }
+
+        } catch (NumberFormatException e) {
+            System.err.println("[ERRO] Parâmetro numérico inválido: " + e.getMessage());
+        } catch (Exception e) {
+            System.err.println("[ERRO] Exceção capturada no main: " + e.getMessage());
+            e.printStackTrace();
+        } finally {
+            if (entrada != null) entrada.liberar();
+            if (diario != null) {
+                try {
+                    diario.close();
+                } catch (IOException e) {
+                    System.err.println("[ERRO] Ao fechar o diário: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * Uma thread por receptor vai pegando a próxima partição pendente.
+     * @return partições que continuaram pendentes (todos os receptores desistiram)
+     */
+    private static List<Integer> ordenarPendentes(DiarioTrabalho diario, BufferNativo entrada,
+                                                  String[] servidores) throws InterruptedException {
+        List<Integer> pendentes = diario.pendentes();
+        FilaParticoes fila = new FilaParticoes(pendentes);
+        for (int p : pendentes) {
+            String receptor = diario.getAtribuicao(p);
+            if (receptor != null) {
+                System.out.println("[LOG] Partição " + p + " estava com " + receptor + " e será enviada de novo");
+            }
+        }
+
+        List<Thread> threads = new ArrayList<>();
+        for (String servidor : servidores) {
+            Thread thread = new Thread(() -> atenderFila(diario, entrada, servidor, fila),
+                    "Thread-Trabalho-" + servidor);
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        return fila.restantes();
+    }
+
+    private static void atenderFila(DiarioTrabalho diario, BufferNativo entrada, String servidor,
+                                    FilaParticoes fila) {
+        ConexaoR conexao = null;
+        int falhasSeguidas = 0;
+        try {
+            while (true) {
+                Integer p = fila.proxima();
+                if (p == null) {
+                    return;
+                }
+
+                try {
+                    if (conexao == null) {
+                        String[] partes = servidor.split(":");
+                        conexao = new ConexaoR(partes[0], Integer.parseInt(partes[1]));
+                    }
+                    diario.registrarAtribuicao(p, servidor);
+
+                    int inicio = diario.inicioDaParticao(p);
+                    BufferNativo parte = entrada.fatia(inicio, inicio + diario.tamanhoDaParticao(p));
+                    try (BufferNativo run = conexao.enviarPedido(new Pedido(parte)).getBuffer()) {
+                        diario.registrarRun(p, run);
+                    }
+                    fila.concluir();
+                    falhasSeguidas = 0;
+                    System.out.println("[LOG] Partição " + p + " concluída por " + servidor);
+                } catch (Exception e) {
+                    // A partição volta para a fila; outro receptor (ou este, reconectado) a pega
+                    fila.devolver(p);
+                    if (conexao != null) {
+                        conexao.fechar();
+                        conexao = null;
+                    }
+                    if (++falhasSeguidas > TENTATIVAS_RECONEXAO) {
+                        System.err.println("[ERRO] Desistindo de " + servidor + " após " + TENTATIVAS_RECONEXAO +
+                                " tentativas: " + e.getMessage());
+                        return;
+                    }
+                    System.err.println("[AVISO] Falha com " + servidor + " na partição " + p + " (" +
+                            e.getMessage() + "); nova tentativa em " + ESPERA_RECONEXAO_MS + " ms");
+                    Thread.sleep(ESPERA_RECONEXAO_MS);
+                } catch (Error e) {
+                    // Ex.: OutOfMemoryError ao alocar a resposta. A thread morre, mas a partição
+                    // precisa voltar para a fila, senão as outras esperam por ela para sempre
+                    fila.devolver(p);
+                    System.err.println("[ERRO] Thread de " + servidor + " encerrada na partição " + p + ": " + e);
+                    throw e;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            if (conexao != null) {
+                try {
+                    conexao.enviarEncerramento();
+                } catch (IOException e) {
+                    System.err.println("[ERRO] Ao enviar encerramento para " + conexao + ": " + e.getMessage());
+                }
+                conexao.fechar();
+            }
+        }
+    }
+
+    /**
+     * Intercala as runs gravadas (mapeadas do disco) em um único vetor
+     */
+    private static BufferNativo intercalar(DiarioTrabalho diario) throws IOException, InterruptedException {
+        System.out.println("[LOG] Intercalando " + diario.getNumParticoes() + " run(s)...");
+        List<BufferNativo> runs = new ArrayList<>();
+        try {
+            for (int p = 0; p < diario.getNumParticoes(); p++) {
+                runs.add(diario.carregarRun(p));
+            }
+        } catch (IOException e) {
+            for (BufferNativo run : runs) {
+                run.liberar();
+            }
+            throw e;
+        }
+        return IntercalacaoParalela.mergeComThreads(runs);
+    }
+}
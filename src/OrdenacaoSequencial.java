@@ -1,17 +1,54 @@
 package src;
 
 import java.io.*;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
 import java.security.SecureRandom;
-import java.util.Scanner;
+import java.util.*;
+import src.Comunicacao.BufferNativo;
+import src.Comunicacao.KernelOrdenacao;
+import src.Comunicacao.OrdenacaoAdaptativa;
 import src.Comunicacao.Pedido;
+import src.Distribuidor.ExecucaoLote;
+import src.Receptor.Receptor;
 
 /**
  * Programa que faz a ordenação sem paralelismo/distribuição,
  * para comparar tempos com o sistema distribuído.
+ *
+ * Com o argumento "comparar", mede lado a lado, em um único nó, os algoritmos disponíveis
+ * (Pedido.ordenar, Merge Sort paralelo do Receptor, Arrays.sort, Arrays.parallelSort,
+ * contagem e Merge Sort adaptativo) sobre os mesmos dados gerados com semente fixa
+ * (os mesmos da execução em lote), com aquecimento e várias iterações:
+ *   java -cp . src.OrdenacaoSequencial comparar <tamanhos> [iterações] [aquecimento] [distribuição] [semente]
  */
 public class OrdenacaoSequencial {
 
+    /**
+     * Algoritmo medido na comparação. Recebe a cópia de trabalho no heap e fora dele
+     * (usa a que lhe convém) e devolve o vetor ordenado (byte[] ou BufferNativo).
+     */
+    private interface Ordenador {
+        Object ordenar(byte[] vetor, BufferNativo buffer) throws Exception;
+    }
+
+    private static class Motor {
+        final String nome;
+        final Ordenador ordenador;
+
+        Motor(String nome, Ordenador ordenador) {
+            this.nome = nome;
+            this.ordenador = ordenador;
+        }
+    }
+
     public static void main(String[] args) {
+        if (args.length > 0 && args[0].equalsIgnoreCase("comparar")) {
+            comparar(args);
+            return;
+        }
+
         Scanner scanner = new Scanner(System.in);
 
         try {
@@ -43,7 +80,7 @@ public class OrdenacaoSequencial {
             }
 
             // Ordenação sequencial
-            System.out.println("\n[LOG] Iniciando ordenação sequencial (Merge Sort)...");
+            System.out.println("\n[LOG] Iniciando ordenação sequencial (kernel " + KernelOrdenacao.getKernel() + ")...");
             long inicio = System.currentTimeMillis();
             byte[] vetorOrdenado = ordenarSequencial(vetor);
             long fim = System.currentTimeMillis();
@@ -83,6 +120,8 @@ public class OrdenacaoSequencial {
             System.out.println("Tempo de ordenação sequencial: " + tempoOrdenacao + " ms");
             System.out.println("Tempo médio por elemento: " + String.format("%.6f", tempoOrdenacao / (double)tamanho) + " ms");
             System.out.println("\nDica: Execute o Distribuidor com o mesmo tamanho de vetor para comparar os tempos!");
+            System.out.println("Para uma medição confiável (aquecimento, várias iterações, todos os algoritmos): " +
+                    "java -cp . src.OrdenacaoSequencial comparar " + tamanho);
 
         } catch (Exception e) {
             System.err.println("[ERRO] Exceção capturada: " + e.getMessage());
@@ -94,7 +133,209 @@ public class OrdenacaoSequencial {
     }
 
     /**
-     * Ordena o vetor usando Merge Sort (sem paralelismo)
+     * Modo de comparação: para cada tamanho, gera o vetor uma vez e mede cada algoritmo
+     * sobre uma cópia dele, descartando as primeiras execuções (aquecimento do JIT)
+     */
+    private static void comparar(String[] args) {
+        if (args.length < 2) {
+            System.err.println("Uso: OrdenacaoSequencial comparar <tamanho,...> [iterações] [aquecimento] " +
+                    "[distribuição] [semente]");
+            return;
+        }
+
+        int iteracoes = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+        int aquecimento = args.length > 3 ? Integer.parseInt(args[3]) : 3;
+        String distribuicao = args.length > 4 ? args[4] : "aleatoria";
+        long semente = args.length > 5 ? Long.parseLong(args[5]) : 42;
+
+        // Os logs [LOG] do Receptor não entram na medição nem no relatório
+        PrintStream saida = System.out;
+        PrintStream silenciosa = new PrintStream(OutputStream.nullOutputStream());
+
+        saida.println("=== COMPARAÇÃO DE ALGORITMOS (UM NÓ) ===");
+        saida.println("[LOG] Processadores: " + Runtime.getRuntime().availableProcessors() + ", kernel " +
+                KernelOrdenacao.getKernel() + ", " + iteracoes + " iteração(ões) medidas após " + aquecimento +
+                " de aquecimento, distribuição " + distribuicao + ", semente " + semente);
+
+        for (String t : args[1].split(",")) {
+            int tamanho = Integer.parseInt(t.trim());
+            try (BufferNativo entrada = ExecucaoLote.gerarVetor(tamanho, distribuicao, semente);
+                 BufferNativo trabalho = BufferNativo.alocar(tamanho);
+                 BufferNativo aux = BufferNativo.alocar(tamanho)) {
+                byte[] original = entrada.paraVetor();
+                byte[] esperado = original.clone();
+                Arrays.sort(esperado);
+                byte[] copia = new byte[tamanho];
+
+                // Auxiliares alocados uma vez, fora da medição (como o Receptor faz com o pool)
+                List<Motor> motores = Arrays.asList(
+                        // Versão estática, sobre os buffers já preparados: Pedido.ordenar() copiaria
+                        // o vetor duas vezes e alocaria o auxiliar dentro do tempo medido
+                        new Motor("Pedido.ordenar", (v, b) -> {
+                            Pedido.ordenar(b, aux);
+                            return b;
+                        }),
+                        new Motor("Receptor (paralelo)", (v, b) -> {
+                            Receptor.ordenarParalelo(b);
+                            return b;
+                        }),
+                        new Motor("Arrays.sort", (v, b) -> {
+                            Arrays.sort(v);
+                            return v;
+                        }),
+                        new Motor("Arrays.parallelSort", (v, b) -> {
+                            Arrays.parallelSort(v);
+                            return v;
+                        }),
+                        new Motor("Contagem", (v, b) -> {
+                            KernelOrdenacao.ordenarPorContagem(b);
+                            return b;
+                        }),
+                        new Motor("Merge Sort adaptativo", (v, b) -> {
+                            OrdenacaoAdaptativa.ordenar(b, aux);
+                            return b;
+                        }));
+
+                saida.println(String.format("%n[RESULTADO] %d elementos (%s)", tamanho, distribuicao));
+                saida.println(String.format("%-22s %10s %10s %10s %10s %10s %12s %6s %8s %12s %s",
+                        "algoritmo", "min_ms", "media_ms", "p50_ms", "max_ms", "desvio_ms", "Melem/s",
+                        "gcs", "gc_ms", "alocado_MB", "ok"));
+
+                double referencia = 0;
+                for (Motor motor : motores) {
+                    System.setOut(silenciosa);
+                    Medicao m;
+                    try {
+                        m = medir(motor, original, copia, entrada, trabalho, esperado, iteracoes, aquecimento);
+                    } finally {
+                        System.setOut(saida);
+                    }
+                    if (referencia == 0) {
+                        referencia = m.mediana();
+                    }
+                    saida.println(String.format(Locale.ROOT,
+                            "%-22s %10.3f %10.3f %10.3f %10.3f %10.3f %12.1f %6d %8d %12.1f %s  (%.2fx)",
+                            motor.nome, m.minimo(), m.media(), m.mediana(), m.maximo(), m.desvio(),
+                            tamanho / 1000.0 / Math.max(m.mediana(), 1e-6), m.coletas, m.tempoColetasMs,
+                            m.bytesAlocados / 1048576.0, m.correto ? "sim" : "NÃO", referencia / m.mediana()));
+                }
+            } catch (Exception e) {
+                System.setOut(saida);
+                System.err.println("[ERRO] Comparação com " + tamanho + " elementos falhou: " + e.getMessage());
+                e.printStackTrace();
+            }
+        }
+        saida.println("\n(alocado_MB: bytes alocados no heap pela thread principal; a última coluna é o ganho " +
+                "sobre Pedido.ordenar pela mediana)");
+    }
+
+    /**
+     * Tempos (nanoTime) e contadores de GC/alocação das iterações medidas de um algoritmo
+     */
+    private static class Medicao {
+        final double[] tempos;
+        long coletas;
+        long tempoColetasMs;
+        long bytesAlocados;
+        boolean correto = true;
+
+        Medicao(int iteracoes) {
+            tempos = new double[iteracoes];
+        }
+
+        double minimo() {
+            return Arrays.stream(tempos).min().orElse(0);
+        }
+
+        double maximo() {
+            return Arrays.stream(tempos).max().orElse(0);
+        }
+
+        double media() {
+            return Arrays.stream(tempos).average().orElse(0);
+        }
+
+        double mediana() {
+            double[] ordenados = tempos.clone();
+            Arrays.sort(ordenados);
+            return ordenados.length == 0 ? 0 : ordenados[ordenados.length / 2];
+        }
+
+        double desvio() {
+            double media = media();
+            double soma = 0;
+            for (double t : tempos) {
+                soma += (t - media) * (t - media);
+            }
+            return tempos.length < 2 ? 0 : Math.sqrt(soma / (tempos.length - 1));
+        }
+    }
+
+    private static Medicao medir(Motor motor, byte[] original, byte[] copia, BufferNativo entrada,
+                                 BufferNativo trabalho, byte[] esperado, int iteracoes, int aquecimento)
+            throws Exception {
+        Medicao m = new Medicao(iteracoes);
+        for (int i = 0; i < aquecimento + iteracoes; i++) {
+            // A cópia da entrada não entra no tempo
+            System.arraycopy(original, 0, copia, 0, original.length);
+            trabalho.copiarDe(entrada);
+
+            boolean medida = i >= aquecimento;
+            long coletas = 0, tempoColetas = 0, alocados = 0;
+            if (medida) {
+                coletas = contarColetas();
+                tempoColetas = tempoColetasMs();
+                alocados = bytesAlocadosNaThread();
+            }
+
+            long inicio = System.nanoTime();
+            Object resultado = motor.ordenador.ordenar(copia, trabalho);
+            long fim = System.nanoTime();
+
+            if (medida) {
+                m.tempos[i - aquecimento] = (fim - inicio) / 1e6;
+                m.coletas += contarColetas() - coletas;
+                m.tempoColetasMs += tempoColetasMs() - tempoColetas;
+                m.bytesAlocados += bytesAlocadosNaThread() - alocados;
+            }
+            if (i == aquecimento + iteracoes - 1) {
+                byte[] obtido = resultado instanceof BufferNativo
+                        ? ((BufferNativo) resultado).paraVetor() : (byte[]) resultado;
+                m.correto = Arrays.equals(obtido, esperado);
+            }
+        }
+        return m;
+    }
+
+    private static long contarColetas() {
+        long total = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            total += Math.max(0, gc.getCollectionCount());
+        }
+        return total;
+    }
+
+    private static long tempoColetasMs() {
+        long total = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            total += Math.max(0, gc.getCollectionTime());
+        }
+        return total;
+    }
+
+    /**
+     * Bytes alocados no heap pela thread atual (0 se a JVM não oferecer o contador)
+     */
+    private static long bytesAlocadosNaThread() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (threads instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) threads).getCurrentThreadAllocatedBytes();
+        }
+        return 0;
+    }
+
+    /**
+     * Ordena o vetor sem paralelismo (contagem ou Merge Sort adaptativo, ver KernelOrdenacao)
      */
     private static byte[] ordenarSequencial(byte[] vetor) {
         Pedido pedido = new Pedido(vetor);
@@ -0,0 +1,281 @@
+package src.Receptor;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.nio.ByteBuffer;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import src.Comunicacao.*;
+
+/**
+ * Ajuste automático do Merge Sort paralelo do Receptor: tamanho abaixo do qual um trecho
+ * é ordenado sequencialmente (limiar) e quantos níveis da recursão criam threads
+ * (profundidade paralela).
+ *
+ * Na primeira execução em uma máquina, os candidatos são medidos em segundo plano com um
+ * vetor de calibração (só enquanto não há pedidos em andamento: uma medição que coincidiu
+ * com algum pedido é descartada e repetida) e o melhor perfil é salvo
+ * em ~/.ordenacao/perfil-<host>.properties; nas execuções seguintes o perfil é só lido.
+ * Até a calibração terminar valem os valores antigos (1000 e log2 dos processadores).
+ *
+ * Em cada pedido, a profundidade é reduzida para vetores pequenos (não há trechos maiores
+ * que o limiar para dividir) e com vários pedidos simultâneos (um nível a menos a cada vez
+ * que o número de pedidos em andamento dobra).
+ *
+ * -Dajuste.calibracao=auto|sempre|nunca (padrão auto) e -Dajuste.perfil=<arquivo>.
+ */
+class AjusteParalelismo {
+
+    private static final int NUM_PROCESSADORES = Runtime.getRuntime().availableProcessors();
+
+    private static final String CALIBRACAO = System.getProperty("ajuste.calibracao", "auto");
+
+    private static final int TAMANHO_CALIBRACAO = 4 * 1024 * 1024;
+    private static final int REPETICOES = 3;
+    private static final int[] LIMIARES = { 1000, 4096, 16384, 65536, 262144, 1048576 };
+    private static final int PROFUNDIDADE_MAXIMA = 12;
+
+    /** A recursão nunca passa de 10 níveis: no máximo 1024 trechos sequenciais por pedido */
+    private static final int NIVEIS_MAXIMOS = 10;
+
+    /**
+     * Parâmetros usados em uma ordenação
+     */
+    static class Parametros {
+        final int limiarSequencial;
+        final int profundidadeParalela;
+
+        Parametros(int limiarSequencial, int profundidadeParalela) {
+            this.limiarSequencial = limiarSequencial;
+            this.profundidadeParalela = profundidadeParalela;
+        }
+
+        @Override
+        public String toString() {
+            return "limiar sequencial " + limiarSequencial + ", profundidade paralela " + profundidadeParalela;
+        }
+    }
+
+    /**
+     * Ordenação usada nas medições (o Merge Sort do Receptor com os parâmetros dados)
+     */
+    interface Ordenacao {
+        void ordenar(BufferNativo dados, BufferNativo aux, Parametros parametros) throws InterruptedException;
+    }
+
+    private final Ordenacao ordenacao;
+    private final Path arquivoPerfil;
+    private final AtomicInteger pedidosAtivos = new AtomicInteger();
+    // Pedidos já iniciados: detecta um pedido que começou e terminou durante uma medição
+    private final AtomicLong pedidosIniciados = new AtomicLong();
+    // Uma medição em andamento conta como mais um pedido na escolha da profundidade
+    private volatile boolean medindo;
+    private volatile Parametros perfil = new Parametros(1000, log2Acima(NUM_PROCESSADORES));
+    private volatile String origem = "padrão";
+    private boolean perfilLido;
+    private boolean perfilValido;
+    private boolean calibracaoIniciada;
+
+    AjusteParalelismo(Ordenacao ordenacao) {
+        this.ordenacao = ordenacao;
+        this.arquivoPerfil = Paths.get(System.getProperty("ajuste.perfil",
+                Paths.get(System.getProperty("user.home"), ".ordenacao", "perfil-" + nomeDoHost() + ".properties")
+                        .toString()));
+    }
+
+    /**
+     * Lê o perfil salvo (uma vez) e, se "calibrar" e não houver perfil válido, inicia a
+     * calibração em segundo plano. Uma chamada sem calibrar não impede que uma chamada
+     * posterior com calibrar inicie a calibração.
+     */
+    synchronized void iniciar(boolean calibrar) {
+        if (!perfilLido) {
+            perfilLido = true;
+            perfilValido = !CALIBRACAO.equals("sempre") && carregar();
+        }
+        if (perfilValido || !calibrar || calibracaoIniciada || CALIBRACAO.equals("nunca")) {
+            return;
+        }
+        calibracaoIniciada = true;
+
+        Thread thread = new Thread(() -> {
+            try {
+                long inicio = System.currentTimeMillis();
+                Parametros calibrado = calibrar();
+                perfil = calibrado;
+                origem = "calibrado em " + (System.currentTimeMillis() - inicio) + " ms";
+                System.out.println("[LOG] Ajuste de paralelismo: " + this);
+                salvar(calibrado);
+            } catch (Exception e) {
+                System.err.println("[AVISO] Calibração do paralelismo falhou (mantendo " + perfil + "): " +
+                        e.getMessage());
+            }
+        }, "Thread-Calibracao");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Registra o início de uma ordenação e escolhe os parâmetros para ela.
+     * Deve ser seguido de terminarPedido().
+     */
+    Parametros iniciarPedido(int tamanho) {
+        pedidosIniciados.incrementAndGet();
+        int ativos = pedidosAtivos.incrementAndGet() + (medindo ? 1 : 0);
+        Parametros atual = perfil;
+        int limiar = Math.max(atual.limiarSequencial, tamanho >> NIVEIS_MAXIMOS);
+
+        // Cada trecho paralelo precisa de pelo menos dois trechos acima do limiar
+        int porTamanho = log2Abaixo(Math.max(1, tamanho / limiar));
+        int porCarga = atual.profundidadeParalela - log2Acima(ativos);
+        int profundidade = Math.max(0, Math.min(porTamanho, porCarga));
+        return new Parametros(limiar, profundidade);
+    }
+
+    void terminarPedido() {
+        pedidosAtivos.decrementAndGet();
+    }
+
+    /**
+     * Mede os limiares com a profundidade atual e depois as profundidades com o melhor limiar
+     */
+    private Parametros calibrar() throws InterruptedException {
+        try (BufferNativo original = BufferNativo.alocar(TAMANHO_CALIBRACAO);
+             BufferNativo dados = BufferNativo.alocar(TAMANHO_CALIBRACAO);
+             BufferNativo aux = BufferNativo.alocar(TAMANHO_CALIBRACAO)) {
+            Random rnd = new Random(42);
+            ByteBuffer destino = original.getByteBuffer();
+            byte[] bloco = new byte[BufferNativo.TAMANHO_BLOCO];
+            while (destino.hasRemaining()) {
+                rnd.nextBytes(bloco);
+                destino.put(bloco, 0, Math.min(bloco.length, destino.remaining()));
+            }
+
+            // Aquecimento do JIT
+            medir(original, dados, aux, perfil);
+
+            int profundidade = perfil.profundidadeParalela;
+            int melhorLimiar = LIMIARES[0];
+            double melhorTempo = Double.MAX_VALUE;
+            for (int limiar : LIMIARES) {
+                double tempo = medir(original, dados, aux, new Parametros(limiar, profundidade));
+                if (tempo < melhorTempo) {
+                    melhorTempo = tempo;
+                    melhorLimiar = limiar;
+                }
+            }
+
+            int limiteProfundidade = Math.min(PROFUNDIDADE_MAXIMA, log2Acima(NUM_PROCESSADORES) + 1);
+            int melhorProfundidade = profundidade;
+            melhorTempo = Double.MAX_VALUE;
+            for (int p = 0; p <= limiteProfundidade; p++) {
+                double tempo = medir(original, dados, aux, new Parametros(melhorLimiar, p));
+                if (tempo < melhorTempo) {
+                    melhorTempo = tempo;
+                    melhorProfundidade = p;
+                }
+            }
+            return new Parametros(melhorLimiar, melhorProfundidade);
+        }
+    }
+
+    /**
+     * Mediana de algumas ordenações do vetor de calibração, em ns.
+     * Cada medição espera o Receptor ficar sem pedidos para não disputar processador com eles,
+     * e é repetida se algum pedido começou enquanto ela rodava.
+     */
+    private double medir(BufferNativo original, BufferNativo dados, BufferNativo aux, Parametros parametros)
+            throws InterruptedException {
+        long[] tempos = new long[REPETICOES];
+        for (int i = 0; i < REPETICOES; ) {
+            while (pedidosAtivos.get() > 0) {
+                Thread.sleep(20);
+            }
+            dados.copiarDe(original);
+            long iniciadosAntes = pedidosIniciados.get();
+            medindo = true;
+            long inicio = System.nanoTime();
+            try {
+                ordenacao.ordenar(dados, aux, parametros);
+            } finally {
+                medindo = false;
+            }
+            long tempo = System.nanoTime() - inicio;
+            if (pedidosIniciados.get() == iniciadosAntes) {
+                tempos[i++] = tempo;
+            }
+        }
+        Arrays.sort(tempos);
+        return tempos[REPETICOES / 2];
+    }
+
+    /**
+     * Usa o perfil salvo se ele foi medido com o mesmo número de processadores e o mesmo kernel
+     */
+    private boolean carregar() {
+        if (!Files.exists(arquivoPerfil)) {
+            return false;
+        }
+        Properties propriedades = new Properties();
+        try (Reader leitor = Files.newBufferedReader(arquivoPerfil)) {
+            propriedades.load(leitor);
+            if (Integer.parseInt(propriedades.getProperty("processadores", "0")) != NUM_PROCESSADORES
+                    || !KernelOrdenacao.getKernel().equals(propriedades.getProperty("kernel"))) {
+                System.out.println("[LOG] Perfil de paralelismo em " + arquivoPerfil +
+                        " é de outra configuração; recalibrando");
+                return false;
+            }
+            perfil = new Parametros(Integer.parseInt(propriedades.getProperty("limiarSequencial")),
+                    Integer.parseInt(propriedades.getProperty("profundidadeParalela")));
+            origem = "perfil " + arquivoPerfil;
+            return true;
+        } catch (IOException | RuntimeException e) {
+            System.err.println("[AVISO] Perfil de paralelismo inválido em " + arquivoPerfil + ": " + e.getMessage());
+            return false;
+        }
+    }
+
+    private void salvar(Parametros parametros) {
+        Properties propriedades = new Properties();
+        propriedades.setProperty("limiarSequencial", String.valueOf(parametros.limiarSequencial));
+        propriedades.setProperty("profundidadeParalela", String.valueOf(parametros.profundidadeParalela));
+        propriedades.setProperty("processadores", String.valueOf(NUM_PROCESSADORES));
+        propriedades.setProperty("kernel", KernelOrdenacao.getKernel());
+        try {
+            if (arquivoPerfil.getParent() != null) {
+                Files.createDirectories(arquivoPerfil.getParent());
+            }
+            try (Writer escritor = Files.newBufferedWriter(arquivoPerfil)) {
+                propriedades.store(escritor, "Perfil do Merge Sort paralelo do Receptor (gerado pela calibração)");
+            }
+            System.out.println("[LOG] Perfil de paralelismo salvo em " + arquivoPerfil);
+        } catch (IOException e) {
+            System.err.println("[AVISO] Não foi possível salvar o perfil em " + arquivoPerfil + ": " + e.getMessage());
+        }
+    }
+
+    private static String nomeDoHost() {
+        try {
+            return InetAddress.getLocalHost().getHostName();
+        } catch (IOException e) {
+            return "local";
+        }
+    }
+
+    /** Menor p com 2^p >= n */
+    private static int log2Acima(int n) {
+        return n <= 1 ? 0 : 32 - Integer.numberOfLeadingZeros(n - 1);
+    }
+
+    /** Maior p com 2^p <= n */
+    private static int log2Abaixo(int n) {
+        return 31 - Integer.numberOfLeadingZeros(Math.max(1, n));
+    }
+
+    @Override
+    public String toString() {
+        return perfil + " (" + origem + ")";
+    }
+}
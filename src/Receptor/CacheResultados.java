@@ -0,0 +1,112 @@
+package src.Receptor;
+
+import java.util.*;
+import src.Comunicacao.*;
+
+/**
+ * Cache de vetores já ordenados, indexado pelo conteúdo do vetor original.
+ *
+ * Guarda os resultados fora do heap, dentro de um orçamento de bytes, e despeja
+ * os menos usados recentemente (LRU) quando o orçamento estoura. Uma entrada
+ * despejada enquanto ainda está sendo enviada a um cliente só é liberada quando
+ * o último uso termina (contagem de usos).
+ */
+class CacheResultados {
+
+    /**
+     * Resultado guardado no cache
+     */
+    static class Entrada {
+        private final BufferNativo buffer;
+        private int usos;
+        private boolean despejada;
+
+        private Entrada(BufferNativo buffer) {
+            this.buffer = buffer;
+        }
+
+        BufferNativo getBuffer() {
+            return buffer;
+        }
+    }
+
+    private final long orcamentoBytes;
+    private final PoolBuffersPorClasse pool;
+    private final LinkedHashMap<ChaveConteudo, Entrada> entradas = new LinkedHashMap<>(16, 0.75f, true);
+    private long bytesOcupados;
+    private long acertos;
+    private long faltas;
+    private long despejos;
+
+    /**
+     * @param pool para onde vão os buffers despejados (ou que não couberem)
+     */
+    CacheResultados(long orcamentoBytes, PoolBuffersPorClasse pool) {
+        this.orcamentoBytes = orcamentoBytes;
+        this.pool = pool;
+    }
+
+    boolean isAtivo() {
+        return orcamentoBytes > 0;
+    }
+
+    /**
+     * Procura um resultado. Em caso de acerto, a entrada deve ser devolvida com devolver()
+     * depois de usada.
+     * @return entrada ou null (falta)
+     */
+    synchronized Entrada obter(ChaveConteudo chave) {
+        Entrada entrada = entradas.get(chave);
+        if (entrada == null) {
+            faltas++;
+            return null;
+        }
+        acertos++;
+        entrada.usos++;
+        return entrada;
+    }
+
+    synchronized void devolver(Entrada entrada) {
+        entrada.usos--;
+        if (entrada.despejada && entrada.usos == 0) {
+            pool.devolver(entrada.buffer);
+        }
+    }
+
+    /**
+     * Guarda um resultado, assumindo a posse do buffer: se ele não couber no
+     * orçamento (ou a chave já existir), volta ao pool aqui mesmo.
+     */
+    synchronized void guardar(ChaveConteudo chave, BufferNativo ordenado) {
+        long tamanho = ordenado.tamanho();
+        if (tamanho > orcamentoBytes || entradas.containsKey(chave)) {
+            pool.devolver(ordenado);
+            return;
+        }
+
+        // Despeja os menos usados recentemente até caber
+        Iterator<Entrada> iterador = entradas.values().iterator();
+        while (bytesOcupados + tamanho > orcamentoBytes && iterador.hasNext()) {
+            Entrada antiga = iterador.next();
+            iterador.remove();
+            bytesOcupados -= antiga.buffer.tamanho();
+            despejos++;
+            antiga.despejada = true;
+            if (antiga.usos == 0) {
+                pool.devolver(antiga.buffer);
+            }
+        }
+
+        entradas.put(chave, new Entrada(ordenado));
+        bytesOcupados += tamanho;
+    }
+
+    @Override
+    public synchronized String toString() {
+        long consultas = acertos + faltas;
+        return String.format("acertos=%d, faltas=%d (taxa de acerto %.1f%%), despejos=%d, entradas=%d, " +
+                        "ocupação=%.1f/%.1f MB",
+                acertos, faltas, consultas == 0 ? 0.0 : 100.0 * acertos / consultas, despejos,
+                entradas.size(), bytesOcupados / 1048576.0, orcamentoBytes / 1048576.0);
+    }
+}
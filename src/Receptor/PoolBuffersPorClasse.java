@@ -0,0 +1,108 @@
+package src.Receptor;
+
+import java.util.*;
+import src.Comunicacao.*;
+
+/**
+ * Pool de buffers fora do heap compartilhado por todas as conexões do Receptor.
+ *
+ * Os pedidos são atendidos por classes de tamanho (potências de 2, de 4 KB a 1 GB):
+ * emprestar(n) entrega uma fatia de n bytes de um bloco da menor classe que comporta n,
+ * reaproveitando um bloco livre quando houver. devolver() guarda o bloco para o próximo
+ * pedido enquanto o total guardado não passar da retenção máxima; acima disso o bloco
+ * é liberado na hora. Em regime, pedidos de tamanhos parecidos não alocam nada.
+ *
+ * O arredondamento para a potência de 2 acima tem custo de memória: um bloco pode ter quase
+ * o dobro dos bytes pedidos. A retenção máxima conta os bytes reais dos blocos, mas esses
+ * blocos podem atender só pedidos de pouco mais da metade do seu tamanho, e os emprestados
+ * também ocupam até ~2x o que foi pedido.
+ */
+class PoolBuffersPorClasse implements AlocadorBuffers {
+
+    private static final int MENOR_CLASSE = 12;  // 4 KB
+    private static final int MAIOR_CLASSE = 30;  // 1 GB
+
+    private final long retencaoMaxima;
+    private final List<Deque<BufferNativo>> livres = new ArrayList<>();
+    private final Map<BufferNativo, BufferNativo> emprestados = new IdentityHashMap<>();
+    private long bytesRetidos;
+    private long emprestimos;
+    private long reutilizacoes;
+    private long descartes;
+
+    PoolBuffersPorClasse(long retencaoMaxima) {
+        this.retencaoMaxima = retencaoMaxima;
+        for (int c = MENOR_CLASSE; c <= MAIOR_CLASSE; c++) {
+            livres.add(new ArrayDeque<>());
+        }
+    }
+
+    /**
+     * Empresta um buffer de exatamente "tamanho" bytes (conteúdo indefinido).
+     * Deve voltar com devolver().
+     */
+    BufferNativo emprestar(int tamanho) {
+        int classe = classe(tamanho);
+        if (classe > MAIOR_CLASSE) {
+            return BufferNativo.alocar(tamanho);
+        }
+
+        BufferNativo bloco;
+        synchronized (this) {
+            emprestimos++;
+            bloco = livres.get(classe - MENOR_CLASSE).poll();
+            if (bloco != null) {
+                bytesRetidos -= bloco.tamanho();
+                reutilizacoes++;
+            }
+        }
+        if (bloco == null) {
+            bloco = BufferNativo.alocar(1 << classe);
+        }
+
+        BufferNativo fatia = bloco.fatia(0, tamanho);
+        synchronized (this) {
+            emprestados.put(fatia, bloco);
+        }
+        return fatia;
+    }
+
+    /**
+     * Devolve um buffer emprestado. Buffers que não vieram do pool são liberados.
+     */
+    void devolver(BufferNativo buffer) {
+        BufferNativo bloco;
+        synchronized (this) {
+            bloco = emprestados.remove(buffer);
+            if (bloco != null && bytesRetidos + bloco.tamanho() <= retencaoMaxima) {
+                livres.get(classe(bloco.tamanho()) - MENOR_CLASSE).push(bloco);
+                bytesRetidos += bloco.tamanho();
+                return;
+            }
+            if (bloco != null) {
+                descartes++;
+            }
+        }
+        (bloco != null ? bloco : buffer).liberar();
+    }
+
+    /**
+     * Uso como alocador de desserialização (Pedido recebido pelo socket)
+     */
+    @Override
+    public BufferNativo alocar(int tamanho) {
+        return emprestar(tamanho);
+    }
+
+    private static int classe(int tamanho) {
+        return Math.max(MENOR_CLASSE, 32 - Integer.numberOfLeadingZeros(Math.max(tamanho, 1) - 1));
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("empréstimos=%d, reutilizados=%d (%.1f%%), descartados=%d, emprestados agora=%d, " +
+                        "retidos=%.1f/%.1f MB",
+                emprestimos, reutilizacoes, emprestimos == 0 ? 0.0 : 100.0 * reutilizacoes / emprestimos,
+                descartes, emprestados.size(), bytesRetidos / 1048576.0, retencaoMaxima / 1048576.0);
+    }
+}
@@ -3,12 +3,63 @@ package src.Receptor;
 import java.io.*;
 import java.net.*;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
 import src.Comunicacao.*;
 
 public class Receptor {
 
     private static final int NUM_PROCESSADORES = Runtime.getRuntime().availableProcessors();
 
+    /** Orçamento padrão do cache de resultados, em MB (0 desativa) */
+    private static final int CACHE_PADRAO_MB = 256;
+
+    /** Retenção padrão do pool de buffers, em MB */
+    private static final int RETENCAO_POOL_PADRAO_MB = 256;
+
+    // Pool de buffers e cache compartilhados por todas as conexões deste Receptor
+    private static PoolBuffersPorClasse pool = new PoolBuffersPorClasse((long) RETENCAO_POOL_PADRAO_MB << 20);
+    private static CacheResultados cache = new CacheResultados((long) CACHE_PADRAO_MB << 20, pool);
+
+    // Limiar sequencial e profundidade paralela do Merge Sort, calibrados por máquina
+    private static final AjusteParalelismo ajuste = new AjusteParalelismo((dados, aux, parametros) ->
+            mergeSortParaleloRecursivo(dados, aux, 0, dados.tamanho(), 0, parametros, 0, 0));
+
+    // Threads do Merge Sort paralelo, reaproveitadas entre pedidos (e com elas os blocos e
+    // contadores por thread de BufferNativo e KernelOrdenacao). Cresce sob demanda, então uma
+    // metade esperando a outra nunca fica sem thread; threads ociosas por 60 s são encerradas.
+    private static final AtomicInteger numeroThreadOrdenacao = new AtomicInteger();
+    private static final ExecutorService threadsOrdenacao = Executors.newCachedThreadPool(tarefa -> {
+        Thread thread = new Thread(tarefa, "Thread-MergeSort-" + numeroThreadOrdenacao.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Run guardada sem uso por mais que isto é descartada (o Distribuidor que a pediu caiu).
+     * -Druns.expiracaoSegundos=<s> (padrão 600)
+     */
+    private static final long EXPIRACAO_RUN_MS = Long.getLong("runs.expiracaoSegundos", 600) * 1000;
+
+    /**
+     * Run guardada para a intercalação entre pares. "emUso" a protege da expiração e de
+     * outras conexões enquanto ela é intercalada aqui.
+     */
+    private static class RunGuardada {
+        final BufferNativo buffer;
+        long ultimoUso = System.currentTimeMillis();
+        boolean emUso;
+
+        RunGuardada(BufferNativo buffer) {
+            this.buffer = buffer;
+        }
+    }
+
+    // Runs guardadas para a intercalação entre pares, visíveis a todas as conexões.
+    // Os identificadores são aleatórios: quem não recebeu o id não consegue buscar a run.
+    private static final Map<String, RunGuardada> runsGuardadas = new HashMap<>();
+    private static Thread threadExpiracao;
+
     public static void main(String[] args) {
         ServerSocket serverSocket = null;
         int porta = 0;
@@ -17,6 +68,14 @@ public class Receptor {
             // Permitir escolher a porta via argumento de linha de comando
             if (args.length > 0) {
                 porta = Integer.parseInt(args[0]);
+                // Segundo argumento (opcional): orçamento do cache de resultados em MB
+                // Terceiro argumento (opcional): quanto o pool de buffers pode reter, em MB
+                if (args.length > 2) {
+                    pool = new PoolBuffersPorClasse(Long.parseLong(args[2]) << 20);
+                }
+                if (args.length > 1) {
+                    cache = new CacheResultados(Long.parseLong(args[1]) << 20, pool);
+                }
             } else {
                 Scanner scanner = new Scanner(System.in);
                 System.out.print("Digite a porta para o receptor (ex: 12345, 12346): ");
@@ -28,25 +87,14 @@ public class Receptor {
             System.out.println("=== RECEPTOR INICIADO ===");
             System.out.println("[LOG] Servidor rodando na porta: " + serverSocket.getLocalPort());
             System.out.println("[LOG] Processadores disponíveis: " + NUM_PROCESSADORES);
+            System.out.println("[LOG] Kernel de ordenação dos blocos: " + KernelOrdenacao.getKernel());
+            System.out.println("[LOG] Cache de resultados: " + cache);
+            System.out.println("[LOG] Pool de buffers: " + pool);
+            ajuste.iniciar(true);
+            System.out.println("[LOG] Ajuste de paralelismo: " + ajuste);
             System.out.println("[LOG] Aguardando conexões...\n");
 
-            int numeroConexao = 0;
-
-            // Loop principal que aceita conexões
-            while (true) {
-                Socket conexao = serverSocket.accept();
-                final int idConexao = ++numeroConexao;
-
-                System.out.println("[LOG] Conexão #" + idConexao + " aceita de: " +
-                        conexao.getInetAddress().getHostAddress() + ":" + conexao.getPort());
-
-                // Cria thread para tratar a conexão
-                Thread threadConexao = new Thread(() -> {
-                    tratarConexao(conexao, idConexao);
-                }, "Thread-Conexao-" + idConexao);
-
-                threadConexao.start();
-            }
+            aceitarConexoes(serverSocket);
 
         } catch (NumberFormatException e) {
             System.err.println("[ERRO FATAL] Porta inválida fornecida");
@@ -68,19 +116,78 @@ public class Receptor {
         }
     }
 
+    /**
+     * Inicia um Receptor dentro da própria JVM, escutando apenas em loopback.
+     * As threads criadas são daemon, então não impedem a JVM de encerrar.
+     * @param porta - porta desejada (0 = porta livre escolhida pelo sistema)
+     * @return ServerSocket já aceitando conexões (feche-o para parar o Receptor)
+     */
+    public static ServerSocket iniciarLocal(int porta) throws IOException {
+        ServerSocket serverSocket = new ServerSocket(porta, 50, InetAddress.getLoopbackAddress());
+        // Receptores locais servem a medições (execução em lote): só lê o perfil salvo, sem calibrar
+        // em segundo plano durante a medição nem gravar o perfil como efeito colateral
+        ajuste.iniciar(false);
+        System.out.println("[LOG] Receptor local rodando na porta: " + serverSocket.getLocalPort());
+
+        Thread threadAceite = new Thread(() -> {
+            try {
+                aceitarConexoes(serverSocket);
+            } catch (IOException e) {
+                if (!serverSocket.isClosed()) {
+                    System.err.println("[ERRO] Receptor local na porta " + serverSocket.getLocalPort() +
+                            ": " + e.getMessage());
+                }
+            }
+        }, "Thread-Receptor-Local-" + serverSocket.getLocalPort());
+        threadAceite.setDaemon(true);
+        threadAceite.start();
+
+        return serverSocket;
+    }
+
+    /**
+     * Loop principal que aceita conexões (uma thread por conexão)
+     */
+    private static void aceitarConexoes(ServerSocket serverSocket) throws IOException {
+        int numeroConexao = 0;
+
+        while (true) {
+            Socket conexao = serverSocket.accept();
+            final int idConexao = ++numeroConexao;
+
+            System.out.println("[LOG] Conexão #" + idConexao + " aceita de: " +
+                    conexao.getInetAddress().getHostAddress() + ":" + conexao.getPort());
+
+            // Cria thread para tratar a conexão
+            Thread threadConexao = new Thread(() -> {
+                tratarConexao(conexao, idConexao);
+            }, "Thread-Conexao-" + idConexao);
+
+            threadConexao.start();
+        }
+    }
+
     /**
      * Trata uma conexão individual
      */
     private static void tratarConexao(Socket conexao, int idConexao) {
         ObjectInputStream receptor = null;
         ObjectOutputStream transmissor = null;
+        // Conexões com os filhos, abertas sob demanda quando este Receptor atua como nó intermediário
+        Map<String, ConexaoR> filhos = new HashMap<>();
+        // PedidoMapeado só é aceito depois da negociação, e só de clientes nesta máquina
+        boolean memoriaCompartilhada = false;
 
         try {
             System.out.println("[LOG] Conexão #" + idConexao + " - Inicializando streams...");
 
+            // Sem o algoritmo de Nagle, respostas pequenas não esperam o ACK atrasado do cliente
+            conexao.setTcpNoDelay(true);
             receptor = new ObjectInputStream(conexao.getInputStream());
             transmissor = new ObjectOutputStream(conexao.getOutputStream());
             transmissor.flush();
+            // Vetores recebidos nesta conexão são desserializados direto em buffers do pool
+            AlocadorBuffers.instalar(pool);
 
             System.out.println("[LOG] Conexão #" + idConexao + " - Pronto para receber pedidos");
 
@@ -91,28 +198,154 @@ public class Receptor {
             while (true) {
                 objeto = receptor.readObject();
 
-                if (objeto instanceof Pedido) {
+                if (objeto instanceof PedidoSelecao || objeto instanceof PedidoContagem) {
+                    numeroPedido++;
+                    responderConsulta((Pedido) objeto, transmissor, idConexao, numeroPedido);
+                }
+                else if (objeto instanceof PedidoRunGuardada) {
+                    // Ordena e guarda aqui: só o identificador volta para o Distribuidor
+                    numeroPedido++;
+                    BufferNativo dados = ((PedidoRunGuardada) objeto).getBuffer();
+                    long inicio = System.currentTimeMillis();
+                    ordenarLocal(dados, idConexao, numeroPedido);
+                    String id = guardarRun(dados);
+                    transmissor.writeObject(new RespostaRunGuardada(id, dados.tamanho()));
+                    transmissor.flush();
+                    transmissor.reset();
+                    System.out.println("[LOG] Conexão #" + idConexao + " - Pedido #" + numeroPedido +
+                            " ordenado em " + (System.currentTimeMillis() - inicio) + " ms e guardado como run " + id);
+                }
+                else if (objeto instanceof PedidoIntercalacaoPar) {
+                    numeroPedido++;
+                    intercalarComParceiro((PedidoIntercalacaoPar) objeto, transmissor, filhos, idConexao, numeroPedido);
+                }
+                else if (objeto instanceof PedidoBuscarRun) {
+                    // A run só sai do mapa depois de enviada (e se o pedido for para consumi-la)
+                    PedidoBuscarRun busca = (PedidoBuscarRun) objeto;
+                    BufferNativo run = reservarRun(busca.getId());
+                    if (run == null) {
+                        System.err.println("[ERRO] Conexão #" + idConexao + " - Run guardada desconhecida: " +
+                                busca.getId());
+                        responderErro(transmissor, "Run guardada desconhecida: " + busca.getId());
+                        continue;
+                    }
+                    boolean enviada = false;
+                    try {
+                        enviarResposta(transmissor, run);
+                        enviada = true;
+                    } finally {
+                        BufferNativo consumida = encerrarReserva(busca.getId(), enviada && busca.isConsumir());
+                        if (consumida != null) {
+                            pool.devolver(consumida);
+                        }
+                    }
+                }
+                else if (objeto instanceof ComunicadoDescartarRun) {
+                    // Identificador desconhecido (run já intercalada ou buscada): nada a descartar
+                    BufferNativo run = retirarRun(((ComunicadoDescartarRun) objeto).getId());
+                    if (run != null) {
+                        pool.devolver(run);
+                    }
+                    transmissor.writeObject(objeto);
+                    transmissor.flush();
+                    transmissor.reset();
+                }
+                else if (objeto instanceof Pedido) {
                     numeroPedido++;
                     Pedido pedidoRecebido = (Pedido) objeto;
+                    BufferNativo dados = pedidoRecebido.getBuffer();
 
                     System.out.println("[LOG] Conexão #" + idConexao + " - Pedido #" + numeroPedido +
-                            " recebido (tamanho vetor: " + pedidoRecebido.getNumeros().length + ")");
+                            " recebido (tamanho vetor: " + pedidoRecebido.getTamanho() + ")");
 
                     long inicio = System.currentTimeMillis();
-                    byte[] vetorOrdenado = mergeSortParaleloRecursivo(
-                            pedidoRecebido.getNumeros(),
-                            0,
-                            idConexao,
-                            numeroPedido
-                    );
+
+                    // Mesmo conteúdo já ordenado antes: responde direto do cache
+                    ChaveConteudo chave = cache.isAtivo() && pedidoRecebido.isUsarCache()
+                            ? ChaveConteudo.calcular(dados) : null;
+                    CacheResultados.Entrada entrada = chave != null ? cache.obter(chave) : null;
+                    if (entrada != null) {
+                        try {
+                            enviarResposta(transmissor, entrada.getBuffer());
+                        } finally {
+                            cache.devolver(entrada);
+                        }
+                        pool.devolver(dados);
+
+                        System.out.println("[LOG] Conexão #" + idConexao + " - Pedido #" + numeroPedido +
+                                " respondido do cache em " + (System.currentTimeMillis() - inicio) + " ms");
+                        continue;
+                    }
+
+                    BufferNativo vetorOrdenado;
+                    if (pedidoRecebido instanceof PedidoHierarquico
+                            && !((PedidoHierarquico) pedidoRecebido).getSubarvore().isEmpty()) {
+                        vetorOrdenado = ordenarComFilhos((PedidoHierarquico) pedidoRecebido, filhos,
+                                idConexao, numeroPedido);
+                    } else {
+                        ordenarLocal(dados, idConexao, numeroPedido);
+                        vetorOrdenado = dados;
+                    }
                     long fim = System.currentTimeMillis();
 
-                    Resposta resposta = new Resposta(vetorOrdenado);
-                    transmissor.writeObject(resposta);
-                    transmissor.flush();
+                    enviarResposta(transmissor, vetorOrdenado);
+                    if (vetorOrdenado != dados) {
+                        pool.devolver(dados);
+                    }
+                    // O cache assume a posse do resultado (e o devolve ao pool se não couber)
+                    if (chave != null) {
+                        cache.guardar(chave, vetorOrdenado);
+                    } else {
+                        pool.devolver(vetorOrdenado);
+                    }
 
                     System.out.println("[LOG] Conexão #" + idConexao + " - Pedido #" + numeroPedido +
                             " processado e respondido em " + (fim - inicio) + " ms");
+                    System.out.println("[LOG] Cache de resultados: " + cache);
+                    System.out.println("[LOG] Pool de buffers: " + pool);
+                }
+                else if (objeto instanceof PedidoMapeado) {
+                    numeroPedido++;
+                    if (memoriaCompartilhada) {
+                        ordenarMapeado((PedidoMapeado) objeto, transmissor, idConexao, numeroPedido);
+                    } else {
+                        System.err.println("[ERRO] Conexão #" + idConexao + " - PedidoMapeado sem negociação " +
+                                "de memória compartilhada; recusado");
+                        responderErro(transmissor, "Memória compartilhada não negociada nesta conexão");
+                    }
+                }
+                else if (objeto instanceof ComunicadoMemoriaCompartilhada) {
+                    ComunicadoMemoriaCompartilhada negociacao = (ComunicadoMemoriaCompartilhada) objeto;
+                    ComunicadoMemoriaCompartilhada confirmacao = conexao.getInetAddress().isLoopbackAddress()
+                            ? negociacao.confirmar() : negociacao.recusar();
+                    memoriaCompartilhada = confirmacao.getMarca() != 0;
+                    transmissor.writeObject(confirmacao);
+                    transmissor.flush();
+                    transmissor.reset();
+                }
+                else if (objeto instanceof PedidoPorHash) {
+                    // Consulta só pela chave: o vetor completo só vem se faltar no cache
+                    ChaveConteudo chave = ((PedidoPorHash) objeto).getChave();
+                    CacheResultados.Entrada entrada = cache.isAtivo() ? cache.obter(chave) : null;
+                    if (entrada != null) {
+                        try {
+                            enviarResposta(transmissor, entrada.getBuffer());
+                        } finally {
+                            cache.devolver(entrada);
+                        }
+                        System.out.println("[LOG] Conexão #" + idConexao + " - Acerto no cache para " + chave);
+                    } else {
+                        // Sem cache (orçamento 0), o cliente para de perguntar nesta conexão
+                        transmissor.writeObject(new ComunicadoCacheAusente(cache.isAtivo()));
+                        transmissor.flush();
+                        transmissor.reset();
+                    }
+                }
+                else if (objeto instanceof ComunicadoVerificacao) {
+                    // Verificação de saúde: devolve o próprio comunicado
+                    transmissor.writeObject(objeto);
+                    transmissor.flush();
+                    transmissor.reset();
                 }
                 else if (objeto instanceof ComunicadoEncerramento) {
                     System.out.println("[LOG] Conexão #" + idConexao +
@@ -122,6 +355,8 @@ public class Receptor {
                 else {
                     System.err.println("[ERRO] Conexão #" + idConexao +
                             " - Objeto desconhecido recebido: " + objeto.getClass().getName());
+                    // O cliente está esperando uma resposta: sem ela ficaria bloqueado
+                    responderErro(transmissor, "Objeto não suportado pelo Receptor: " + objeto.getClass().getName());
                 }
             }
 
@@ -141,6 +376,17 @@ public class Receptor {
                     " - Exceção não esperada: " + e.getMessage());
             e.printStackTrace();
         } finally {
+            // Encerra as conexões com os filhos (se este Receptor atuou como nó intermediário)
+            for (ConexaoR filho : filhos.values()) {
+                try {
+                    filho.enviarEncerramento();
+                } catch (IOException e) {
+                    System.err.println("[ERRO] Conexão #" + idConexao +
+                            " - Ao enviar encerramento para " + filho + ": " + e.getMessage());
+                }
+                filho.fechar();
+            }
+
             // Fechamento seguro dos recursos
             try {
                 if (transmissor != null) {
@@ -175,140 +421,523 @@ public class Receptor {
     }
 
     /**
-     * Merge Sort Paralelo Recursivo
-     * @param vetor - vetor a ser ordenado
-     * @param profundidade - nível de recursão (para controlar paralelismo)
-     * @param idConexao - ID da conexão (para logs)
-     * @param numeroPedido - número do pedido (para logs)
-     * @return vetor ordenado
+     * Ordena um vetor recebido por memória compartilhada no próprio arquivo mapeado.
+     * Como no socket, consulta o cache antes de ordenar e, se ele estiver ativo, guarda
+     * uma cópia do resultado. Arquivos recusados (ver mapearRecebido) recebem ComunicadoErro.
      */
-    private static byte[] mergeSortParaleloRecursivo(byte[] vetor, int profundidade,
-                                                     int idConexao, int numeroPedido)
-            throws InterruptedException {
+    private static void ordenarMapeado(PedidoMapeado pedido, ObjectOutputStream transmissor,
+                                       int idConexao, int numeroPedido) throws IOException, InterruptedException {
+        System.out.println("[LOG] Conexão #" + idConexao + " - Pedido #" + numeroPedido +
+                " recebido por memória compartilhada (tamanho vetor: " + pedido.getTamanho() + ")");
 
-        int tamanho = vetor.length;
+        long inicio = System.currentTimeMillis();
+        BufferNativo mapeado;
+        try {
+            mapeado = ComunicadoMemoriaCompartilhada.mapearRecebido(pedido.getArquivo(), pedido.getTamanho());
+        } catch (IOException e) {
+            System.err.println("[ERRO] Conexão #" + idConexao + " - Pedido #" + numeroPedido + " recusado: " +
+                    e.getMessage());
+            responderErro(transmissor, "Arquivo mapeado recusado: " + e.getMessage());
+            return;
+        }
 
-        // Caso base: vetor pequeno ou muita profundidade, ordena sequencialmente
-        if (tamanho <= 1000 || profundidade >= 10) {
-            if (profundidade == 0) {
-                System.out.println("    [LOG] Vetor pequeno, ordenando sequencialmente");
+        try (BufferNativo dados = mapeado) {
+            ChaveConteudo chave = cache.isAtivo() && pedido.isUsarCache() ? ChaveConteudo.calcular(dados) : null;
+            CacheResultados.Entrada entrada = chave != null ? cache.obter(chave) : null;
+            if (entrada != null) {
+                try {
+                    dados.copiarDe(entrada.getBuffer());
+                } finally {
+                    cache.devolver(entrada);
+                }
+                transmissor.writeObject(new RespostaMapeada());
+                transmissor.flush();
+                transmissor.reset();
+                System.out.println("[LOG] Conexão #" + idConexao + " - Pedido #" + numeroPedido +
+                        " respondido do cache em " + (System.currentTimeMillis() - inicio) + " ms");
+                return;
+            }
+
+            ordenarLocal(dados, idConexao, numeroPedido);
+            long fim = System.currentTimeMillis();
+
+            // A cópia é feita antes de responder: depois disso o arquivo volta a ser do cliente
+            if (chave != null) {
+                BufferNativo copia = pool.emprestar(dados.tamanho());
+                copia.copiarDe(dados);
+                cache.guardar(chave, copia);
             }
-            Pedido p = new Pedido(vetor);
-            return p.ordenar();
+
+            transmissor.writeObject(new RespostaMapeada());
+            transmissor.flush();
+            transmissor.reset();
+
+            System.out.println("[LOG] Conexão #" + idConexao + " - Pedido #" + numeroPedido +
+                    " processado e respondido em " + (fim - inicio) + " ms");
+            System.out.println("[LOG] Pool de buffers: " + pool);
         }
+    }
 
-        // Log apenas na primeira chamada
-        if (profundidade == 0) {
-            System.out.println("    [LOG] Conexão #" + idConexao + " - Pedido #" + numeroPedido +
-                    " - Iniciando Merge Sort paralelo recursivo");
+    /**
+     * Intercala uma run guardada aqui com a run guardada no parceiro. A run do parceiro
+     * vem direto dele (sem passar pelo Distribuidor) e o resultado fica guardado aqui.
+     * As duas runs só são consumidas se a intercalação terminar (a do parceiro é copiada
+     * sem ser retirada e descartada lá no fim); em caso de falha as duas continuam guardadas
+     * (o Distribuidor pode tentar de novo ou descartá-las) e a resposta é um ComunicadoErro.
+     */
+    private static void intercalarComParceiro(PedidoIntercalacaoPar pedido, ObjectOutputStream transmissor,
+                                              Map<String, ConexaoR> filhos, int idConexao, int numeroPedido)
+            throws IOException {
+        long inicio = System.currentTimeMillis();
+        String endereco = pedido.getEnderecoParceiro();
+        BufferNativo local = reservarRun(pedido.getIdLocal());
+        if (local == null) {
+            System.err.println("[ERRO] Conexão #" + idConexao + " - Run guardada desconhecida: " + pedido.getIdLocal());
+            responderErro(transmissor, "Run guardada desconhecida: " + pedido.getIdLocal());
+            return;
         }
 
-        // Divide o vetor ao meio
-        int meio = tamanho / 2;
-        byte[] esquerda = Arrays.copyOfRange(vetor, 0, meio);
-        byte[] direita = Arrays.copyOfRange(vetor, meio, tamanho);
+        BufferNativo parceiro = null;
+        BufferNativo resultado = null;
+        ConexaoR conexaoParceiro = null;
+        try {
+            conexaoParceiro = obterConexaoFilho(filhos, endereco);
+            Comunicado recebido;
+            try {
+                recebido = conexaoParceiro.enviarComando(new PedidoBuscarRun(pedido.getIdParceiro(), false));
+            } catch (IOException | ClassNotFoundException e) {
+                // Um ComunicadoErro do parceiro deixa a conexão utilizável; só descarta se ela caiu
+                if (!conexaoParceiro.verificar(1000)) {
+                    descartarConexaoFilho(filhos, endereco);
+                }
+                throw new IOException(e.getMessage(), e);
+            }
+            if (!(recebido instanceof Resposta)) {
+                throw new IOException("resposta inválida");
+            }
+            parceiro = ((Resposta) recebido).getBuffer();
+            long recebimento = System.currentTimeMillis();
+
+            resultado = intercalarRuns(local, parceiro);
+            System.out.println("[LOG] Conexão #" + idConexao + " - Pedido #" + numeroPedido + ": run " +
+                    pedido.getIdLocal() + " (" + local.tamanho() + ") + run de " + endereco + " (" +
+                    parceiro.tamanho() + ") recebida em " + (recebimento - inicio) + " ms e intercalada em " +
+                    (System.currentTimeMillis() - recebimento) + " ms");
+        } catch (IOException | RuntimeException e) {
+            String mensagem = "Não foi possível intercalar com a run " + pedido.getIdParceiro() + " em " + endereco +
+                    ": " + e.getMessage();
+            System.err.println("[ERRO] Conexão #" + idConexao + " - " + mensagem);
+            responderErro(transmissor, mensagem);
+            return;
+        } finally {
+            if (parceiro != null) {
+                pool.devolver(parceiro);
+            }
+            BufferNativo consumida = encerrarReserva(pedido.getIdLocal(), resultado != null);
+            if (consumida != null) {
+                pool.devolver(consumida);
+            }
+        }
 
-        // Decide se usa paralelismo baseado na profundidade
-        // Só paraleliza nos primeiros níveis para não criar threads demais
-        boolean usarParalelismo = profundidade < Math.log(NUM_PROCESSADORES) / Math.log(2);
+        // A run do parceiro já está no resultado: pode sair de lá. Se o descarte falhar,
+        // ela expira sozinha no parceiro
+        try {
+            conexaoParceiro.enviarComando(new ComunicadoDescartarRun(pedido.getIdParceiro()));
+        } catch (IOException | ClassNotFoundException e) {
+            System.err.println("[AVISO] Conexão #" + idConexao + " - Não foi possível descartar a run " +
+                    pedido.getIdParceiro() + " em " + endereco + ": " + e.getMessage());
+        }
 
-        byte[] esquerdaOrdenada;
-        byte[] direitaOrdenada;
+        String id = guardarRun(resultado);
+        transmissor.writeObject(new RespostaRunGuardada(id, resultado.tamanho()));
+        transmissor.flush();
+        transmissor.reset();
+    }
 
-        if (usarParalelismo) {
-            // Cria threads para processar cada metade recursivamente
-            ThreadMergeSortRecursivo threadEsquerda = new ThreadMergeSortRecursivo(
-                    esquerda, profundidade + 1, idConexao, numeroPedido, "esq");
-            ThreadMergeSortRecursivo threadDireita = new ThreadMergeSortRecursivo(
-                    direita, profundidade + 1, idConexao, numeroPedido, "dir");
+    /**
+     * Intercala duas runs ordenadas em um novo buffer do pool
+     */
+    private static BufferNativo intercalarRuns(BufferNativo a, BufferNativo b) {
+        BufferNativo resultado = pool.emprestar(a.tamanho() + b.tamanho());
+        resultado.copiar(0, a, 0, a.tamanho());
+        resultado.copiar(a.tamanho(), b, 0, b.tamanho());
+
+        // A intercalação copia para o auxiliar só trechos da primeira run
+        BufferNativo aux = pool.emprestar(a.tamanho());
+        try {
+            OrdenacaoAdaptativa.intercalarNoLugar(resultado, aux, 0, a.tamanho(), resultado.tamanho());
+        } finally {
+            pool.devolver(aux);
+        }
+        return resultado;
+    }
 
-            if (profundidade == 0) {
-                System.out.println("    [LOG] Dividindo em 2 threads recursivas (prof=" + profundidade + ")");
+    private static String guardarRun(BufferNativo run) {
+        String id = UUID.randomUUID().toString();
+        synchronized (runsGuardadas) {
+            runsGuardadas.put(id, new RunGuardada(run));
+            if (threadExpiracao == null) {
+                threadExpiracao = new Thread(Receptor::expirarRuns, "Thread-Expiracao-Runs");
+                threadExpiracao.setDaemon(true);
+                threadExpiracao.start();
             }
+        }
+        return id;
+    }
 
-            threadEsquerda.start();
-            threadDireita.start();
+    /**
+     * Remove e devolve uma run guardada (null se o id for desconhecido ou a run estiver
+     * sendo intercalada por outra conexão)
+     */
+    private static BufferNativo retirarRun(String id) {
+        synchronized (runsGuardadas) {
+            RunGuardada run = runsGuardadas.get(id);
+            if (run == null || run.emUso) {
+                return null;
+            }
+            runsGuardadas.remove(id);
+            return run.buffer;
+        }
+    }
 
-            threadEsquerda.join();
-            threadDireita.join();
+    /**
+     * Marca a run como em uso sem tirá-la do mapa (null se desconhecida ou já em uso).
+     * Deve ser seguido de encerrarReserva().
+     */
+    private static BufferNativo reservarRun(String id) {
+        synchronized (runsGuardadas) {
+            RunGuardada run = runsGuardadas.get(id);
+            if (run == null || run.emUso) {
+                return null;
+            }
+            run.emUso = true;
+            return run.buffer;
+        }
+    }
 
-            esquerdaOrdenada = threadEsquerda.getResultado();
-            direitaOrdenada = threadDireita.getResultado();
-        } else {
-            // Recursão sequencial nos níveis mais profundos
-            esquerdaOrdenada = mergeSortParaleloRecursivo(esquerda, profundidade + 1, idConexao, numeroPedido);
-            direitaOrdenada = mergeSortParaleloRecursivo(direita, profundidade + 1, idConexao, numeroPedido);
+    /**
+     * Termina uma reserva: se "consumir", a run sai do mapa e é devolvida para ser liberada;
+     * senão volta a ficar disponível (e o prazo de expiração recomeça)
+     */
+    private static BufferNativo encerrarReserva(String id, boolean consumir) {
+        synchronized (runsGuardadas) {
+            RunGuardada run = runsGuardadas.get(id);
+            if (run == null) {
+                return null;
+            }
+            if (consumir) {
+                runsGuardadas.remove(id);
+                return run.buffer;
+            }
+            run.emUso = false;
+            run.ultimoUso = System.currentTimeMillis();
+            return null;
         }
+    }
 
-        // Faz merge dos resultados ordenados
-        byte[] resultado = merge(esquerdaOrdenada, direitaOrdenada);
+    /**
+     * Descarta periodicamente as runs esquecidas (Distribuidor que caiu no meio do torneio)
+     */
+    private static void expirarRuns() {
+        long intervalo = Math.max(1000, EXPIRACAO_RUN_MS / 4);
+        while (true) {
+            try {
+                Thread.sleep(intervalo);
+            } catch (InterruptedException e) {
+                return;
+            }
+            List<BufferNativo> expiradas = new ArrayList<>();
+            long agora = System.currentTimeMillis();
+            synchronized (runsGuardadas) {
+                Iterator<RunGuardada> iterador = runsGuardadas.values().iterator();
+                while (iterador.hasNext()) {
+                    RunGuardada run = iterador.next();
+                    if (!run.emUso && agora - run.ultimoUso > EXPIRACAO_RUN_MS) {
+                        expiradas.add(run.buffer);
+                        iterador.remove();
+                    }
+                }
+            }
+            for (BufferNativo run : expiradas) {
+                System.err.println("[AVISO] Run guardada de " + run.tamanho() + " elementos expirou sem uso " +
+                        "(Distribuidor encerrado?); descartando");
+                pool.devolver(run);
+            }
+        }
+    }
 
-        if (profundidade == 0) {
-            System.out.println("    [LOG] Merge Sort recursivo completo");
+    /**
+     * Responde a uma consulta de seleção (top-K) ou de contagem (k-ésimo, quantis)
+     * sem ordenar a partição inteira
+     */
+    private static void responderConsulta(Pedido consulta, ObjectOutputStream transmissor,
+                                          int idConexao, int numeroPedido) throws IOException {
+        BufferNativo dados = consulta.getBuffer();
+        long inicio = System.currentTimeMillis();
+        try {
+            if (consulta instanceof PedidoSelecao) {
+                PedidoSelecao selecao = (PedidoSelecao) consulta;
+                BufferNativo selecionados = selecao.isMaiores()
+                        ? SelecaoParcial.maiores(dados, selecao.getK())
+                        : SelecaoParcial.menores(dados, selecao.getK());
+                enviarResposta(transmissor, selecionados);
+                System.out.println("[LOG] Conexão #" + idConexao + " - Pedido #" + numeroPedido + ": " +
+                        selecionados.tamanho() + (selecao.isMaiores() ? " maiores" : " menores") + " de " +
+                        dados.tamanho() + " selecionados em " + (System.currentTimeMillis() - inicio) + " ms");
+            } else {
+                transmissor.writeObject(new RespostaContagem(SelecaoParcial.contar(dados)));
+                transmissor.flush();
+                transmissor.reset();
+                System.out.println("[LOG] Conexão #" + idConexao + " - Pedido #" + numeroPedido + ": " +
+                        "contagem de " + dados.tamanho() + " elementos em " +
+                        (System.currentTimeMillis() - inicio) + " ms");
+            }
+        } finally {
+            pool.devolver(dados);
         }
+    }
 
-        return resultado;
+    /**
+     * Avisa o cliente que o pedido não pôde ser atendido (a conexão continua aberta)
+     */
+    private static void responderErro(ObjectOutputStream transmissor, String mensagem) throws IOException {
+        transmissor.writeObject(new ComunicadoErro(mensagem));
+        transmissor.flush();
+        transmissor.reset();
+    }
+
+    /**
+     * Envia o vetor ordenado como Resposta
+     */
+    private static void enviarResposta(ObjectOutputStream transmissor, BufferNativo vetorOrdenado)
+            throws IOException {
+        transmissor.writeObject(new Resposta(vetorOrdenado));
+        transmissor.flush();
+        // Evita que o stream mantenha referências aos objetos já enviados
+        transmissor.reset();
+    }
+
+    /**
+     * Ordena um buffer neste Receptor, no próprio lugar
+     */
+    private static void ordenarLocal(BufferNativo dados, int idConexao, int numeroPedido)
+            throws InterruptedException {
+        // O auxiliar vive só durante a ordenação e volta ao pool em seguida
+        BufferNativo aux = pool.emprestar(dados.tamanho());
+        AjusteParalelismo.Parametros parametros = ajuste.iniciarPedido(dados.tamanho());
+        try {
+            mergeSortParaleloRecursivo(
+                    dados,
+                    aux,
+                    0,
+                    dados.tamanho(),
+                    0,
+                    parametros,
+                    idConexao,
+                    numeroPedido
+            );
+        } finally {
+            ajuste.terminarPedido();
+            pool.devolver(aux);
+        }
+    }
+
+    /**
+     * Ordena um buffer no próprio lugar com o Merge Sort paralelo recursivo do Receptor
+     * (usado pela comparação de OrdenacaoSequencial). Usa o perfil salvo da máquina, se houver,
+     * sem calibrar.
+     */
+    public static void ordenarParalelo(BufferNativo dados) throws InterruptedException {
+        ajuste.iniciar(false);
+        ordenarLocal(dados, 0, 0);
     }
 
     /**
-     * Faz o merge (intercalação) de dois vetores ordenados
+     * Atua como nó intermediário da árvore: repassa partes do vetor aos filhos,
+     * ordena uma parte localmente enquanto isso e intercala tudo em um único vetor.
+     * Se um filho falhar, a parte dele é ordenada aqui mesmo.
+     * @return novo buffer com o vetor ordenado (o buffer do pedido continua sendo do chamador)
      */
-    private static byte[] merge(byte[] esquerda, byte[] direita) {
-        byte[] resultado = new byte[esquerda.length + direita.length];
-        int i = 0, j = 0, k = 0;
+    private static BufferNativo ordenarComFilhos(PedidoHierarquico pedido, Map<String, ConexaoR> filhos,
+                                                 int idConexao, int numeroPedido) throws Exception {
+        BufferNativo dados = pedido.getBuffer();
+        List<List<String>> grupos = PedidoHierarquico.dividirEmSubarvores(pedido.getSubarvore(), pedido.getGrau());
+
+        // Peso 1 para a parte local e 1 para cada nó da subárvore de cada filho
+        int[] pesos = new int[grupos.size() + 1];
+        pesos[0] = 1;
+        for (int i = 0; i < grupos.size(); i++) {
+            pesos[i + 1] = grupos.get(i).size();
+        }
+        int[] limites = PedidoHierarquico.dividirProporcional(dados.tamanho(), pesos);
+
+        System.out.println("    [LOG] Conexão #" + idConexao + " - Pedido #" + numeroPedido +
+                " - Nó intermediário, repassando para " + grupos.size() + " filho(s)");
+
+        BufferNativo[] partes = new BufferNativo[grupos.size()];
+        BufferNativo[] resultadosFilhos = new BufferNativo[grupos.size()];
+        List<Thread> threads = new ArrayList<>();
+
+        for (int i = 0; i < grupos.size(); i++) {
+            final int indice = i;
+            final List<String> grupo = grupos.get(i);
+            partes[i] = dados.fatia(limites[i + 1], limites[i + 2]);
 
-        while (i < esquerda.length && j < direita.length) {
-            if (esquerda[i] <= direita[j]) {
-                resultado[k++] = esquerda[i++];
+            Thread thread = new Thread(() -> {
+                String endereco = grupo.get(0);
+                try {
+                    ConexaoR c = obterConexaoFilho(filhos, endereco);
+                    Pedido p = grupo.size() > 1
+                            ? new PedidoHierarquico(partes[indice], grupo.subList(1, grupo.size()), pedido.getGrau())
+                            : new Pedido(partes[indice]);
+                    p.setUsarCache(pedido.isUsarCache());
+                    resultadosFilhos[indice] = c.enviarPedido(p).getBuffer();
+                } catch (Exception e) {
+                    System.err.println("[ERRO] Conexão #" + idConexao + " - Filho " + endereco +
+                            " falhou: " + e.getMessage() + " (parte será ordenada localmente)");
+                    descartarConexaoFilho(filhos, endereco);
+                }
+            }, "Thread-Filho-" + i);
+
+            threads.add(thread);
+            thread.start();
+        }
+
+        // Enquanto os filhos trabalham, ordena a parte local
+        BufferNativo parteLocal = dados.fatia(0, limites[1]);
+        ordenarLocal(parteLocal, idConexao, numeroPedido);
+
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        List<BufferNativo> vetores = new ArrayList<>();
+        vetores.add(parteLocal);
+        for (int i = 0; i < grupos.size(); i++) {
+            if (resultadosFilhos[i] == null) {
+                ordenarLocal(partes[i], idConexao, numeroPedido);
+                vetores.add(partes[i]);
             } else {
-                resultado[k++] = direita[j++];
+                vetores.add(resultadosFilhos[i]);
             }
         }
 
-        while (i < esquerda.length) {
-            resultado[k++] = esquerda[i++];
-        }
+        return IntercalacaoParalela.mergeComThreads(vetores);
+    }
 
-        while (j < direita.length) {
-            resultado[k++] = direita[j++];
+    private static ConexaoR obterConexaoFilho(Map<String, ConexaoR> filhos, String endereco) throws IOException {
+        synchronized (filhos) {
+            ConexaoR conexao = filhos.get(endereco);
+            if (conexao == null) {
+                String[] partes = endereco.split(":");
+                conexao = new ConexaoR(partes[0], Integer.parseInt(partes[1]));
+                filhos.put(endereco, conexao);
+            }
+            return conexao;
         }
+    }
 
-        return resultado;
+    private static void descartarConexaoFilho(Map<String, ConexaoR> filhos, String endereco) {
+        synchronized (filhos) {
+            ConexaoR conexao = filhos.remove(endereco);
+            if (conexao != null) {
+                conexao.fechar();
+            }
+        }
     }
 
     /**
-     * Thread que executa Merge Sort recursivo em um subvetor
+     * Merge Sort Paralelo Recursivo (no próprio buffer, sem cópias por metade)
+     * @param dados - buffer a ser ordenado
+     * @param aux - buffer auxiliar do mesmo tamanho, usado nas intercalações
+     * @param inicio - início do trecho (inclusivo)
+     * @param fim - fim do trecho (exclusivo)
+     * @param profundidade - nível de recursão (para controlar paralelismo)
+     * @param parametros - limiar sequencial e profundidade paralela escolhidos para o pedido
+     * @param idConexao - ID da conexão (para logs; 0 = sem logs)
+     * @param numeroPedido - número do pedido (para logs)
      */
-    private static class ThreadMergeSortRecursivo extends Thread {
-        private final byte[] vetor;
-        private final int profundidade;
-        private final int idConexao;
-        private final int numeroPedido;
-        private final String lado;
-        private byte[] resultado;
-
-        public ThreadMergeSortRecursivo(byte[] vetor, int profundidade,
-                                        int idConexao, int numeroPedido, String lado) {
-            super("Thread-MergeSort-" + lado + "-Prof" + profundidade);
-            this.vetor = vetor;
-            this.profundidade = profundidade;
-            this.idConexao = idConexao;
-            this.numeroPedido = numeroPedido;
-            this.lado = lado;
+    private static void mergeSortParaleloRecursivo(BufferNativo dados, BufferNativo aux, int inicio, int fim,
+                                                   int profundidade, AjusteParalelismo.Parametros parametros,
+                                                   int idConexao, int numeroPedido)
+            throws InterruptedException {
+
+        int tamanho = fim - inicio;
+        // Log apenas na primeira chamada
+        boolean registrar = profundidade == 0 && idConexao > 0;
+
+        // Entrada já ordenada (ou inteiramente decrescente, que é invertida): nada a fazer
+        if (profundidade == 0 && OrdenacaoAdaptativa.contarRun(dados, inicio, fim) == tamanho) {
+            if (registrar) {
+                System.out.println("    [LOG] Vetor já ordenado, nenhuma intercalação necessária");
+            }
+            return;
+        }
+
+        // Caso base: trecho até o limiar calibrado, ordena sequencialmente
+        if (tamanho <= parametros.limiarSequencial) {
+            if (registrar) {
+                System.out.println("    [LOG] Vetor pequeno, ordenando sequencialmente");
+            }
+            Pedido.ordenar(dados.fatia(inicio, fim), aux.fatia(inicio, fim));
+            return;
+        }
+
+        if (registrar) {
+            System.out.println("    [LOG] Conexão #" + idConexao + " - Pedido #" + numeroPedido +
+                    " - Iniciando Merge Sort paralelo recursivo (" + parametros + ")");
         }
 
-        @Override
-        public void run() {
+        // Divide o trecho ao meio (as metades são só intervalos do mesmo buffer)
+        int meio = inicio + tamanho / 2;
+
+        // Só paraleliza nos primeiros níveis (quantos, depende do ajuste e da carga atual)
+        boolean usarParalelismo = profundidade < parametros.profundidadeParalela;
+
+        if (usarParalelismo) {
+            // A metade esquerda vai para uma thread do conjunto reaproveitado; a direita fica nesta
+            if (registrar) {
+                System.out.println("    [LOG] Dividindo em 2 tarefas recursivas (prof=" + profundidade + ")");
+            }
+
+            Future<?> esquerda = threadsOrdenacao.submit(() -> {
+                mergeSortParaleloRecursivo(dados, aux, inicio, meio, profundidade + 1, parametros, idConexao, numeroPedido);
+                return null;
+            });
             try {
-                resultado = mergeSortParaleloRecursivo(vetor, profundidade, idConexao, numeroPedido);
-            } catch (InterruptedException e) {
-                System.err.println("[ERRO] Thread interrompida: " + getName());
-                Thread.currentThread().interrupt();
+                mergeSortParaleloRecursivo(dados, aux, meio, fim, profundidade + 1, parametros, idConexao, numeroPedido);
+            } finally {
+                aguardar(esquerda);
             }
+        } else {
+            // Recursão sequencial nos níveis mais profundos
+            mergeSortParaleloRecursivo(dados, aux, inicio, meio, profundidade + 1, parametros, idConexao, numeroPedido);
+            mergeSortParaleloRecursivo(dados, aux, meio, fim, profundidade + 1, parametros, idConexao, numeroPedido);
         }
 
-        public byte[] getResultado() {
-            return resultado;
+        // Intercala as metades no próprio lugar (metades já em ordem entre si custam O(log n))
+        OrdenacaoAdaptativa.intercalarNoLugar(dados, aux, inicio, meio, fim);
+
+        if (registrar) {
+            System.out.println("    [LOG] Merge Sort recursivo completo");
+        }
+    }
+
+    /**
+     * Espera a metade entregue a outra thread; uma falha nela é relançada aqui
+     */
+    private static void aguardar(Future<?> tarefa) throws InterruptedException {
+        try {
+            tarefa.get();
+        } catch (ExecutionException e) {
+            Throwable causa = e.getCause();
+            if (causa instanceof RuntimeException) {
+                throw (RuntimeException) causa;
+            }
+            if (causa instanceof Error) {
+                throw (Error) causa;
+            }
+            throw new IllegalStateException("Falha na ordenação paralela", causa);
         }
     }
-}
\ No newline at end of file
+}